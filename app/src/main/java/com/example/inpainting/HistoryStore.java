@@ -0,0 +1,375 @@
+package com.example.inpainting;
+
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Undo/redo timeline of the editor. Results (the source image and every inpainting output) are
+// kept as bitmaps while they fit in the byte budget; the least recently used ones are spilled to
+// disk as raw pixels and decoded again when navigated to. Strokes are kept as brush paths and the
+// displayed state (base result plus its strokes) is rendered on demand. Spill files are written
+// on a background thread; a result keeps its bitmap until its file is complete.
+public class HistoryStore implements AutoCloseable {
+
+    public static final int RESULT = 0;
+    public static final int STROKE = 1;
+
+    private static final String TAG = "HistoryStore";
+
+    private static class Entry {
+        final int kind;
+        final long id;
+        final int width;
+        final int height;
+        // RESULT: in memory or spilled
+        Bitmap bitmap;
+        File spill;
+        // the spill file being written, the bitmap is only released once it completes
+        CompletableFuture<File> writing;
+        // STROKE, in the coordinates of its base result
+        final StrokeMask.Stroke stroke;
+
+        Entry(int kind, long id, Bitmap bitmap, StrokeMask.Stroke stroke) {
+            this.kind = kind;
+            this.id = id;
+            this.bitmap = bitmap;
+            this.stroke = stroke;
+            this.width = (bitmap != null) ? bitmap.getWidth() : 0;
+            this.height = (bitmap != null) ? bitmap.getHeight() : 0;
+        }
+    }
+
+    private final File spillDir;
+    private final long budgetBytes;
+    private final Paint strokePaint = new Paint();
+
+    private final List<Entry> entries = new ArrayList<>();
+    // results whose bitmap is in memory, least recently used first
+    private final LinkedHashSet<Entry> resident = new LinkedHashSet<>();
+    // results with a spill file being written
+    private final List<Entry> pendingWrites = new ArrayList<>();
+    private final ExecutorService writer;
+    private long memoryBytes = 0;
+    private long nextId = 0;
+
+    // strokeColor is the brush color used to render strokes over their base result
+    public HistoryStore(File spillDir, long budgetBytes, int strokeColor) {
+        this.spillDir = spillDir;
+        this.budgetBytes = budgetBytes;
+        strokePaint.setAntiAlias(true);
+        strokePaint.setColor(strokeColor);
+        strokePaint.setStyle(Paint.Style.STROKE);
+        strokePaint.setStrokeCap(Paint.Cap.ROUND);
+        strokePaint.setStrokeJoin(Paint.Join.ROUND);
+        this.writer = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "history-spill");
+            thread.setDaemon(true);
+            return thread;
+        });
+        deleteSpills();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int kind(int index) {
+        return entries.get(index).kind;
+    }
+
+    public long id(int index) {
+        return entries.get(index).id;
+    }
+
+    // starts a new timeline with the source image
+    public void reset(Bitmap source) {
+        truncate(-1);
+        addResult(source);
+    }
+
+    // drops every entry after index, e.g. the redo states once a new edit is made
+    public void truncate(int index) {
+        while (entries.size() > index + 1) {
+            drop(entries.remove(entries.size() - 1));
+        }
+    }
+
+    public long addResult(Bitmap result) {
+        Entry entry = new Entry(RESULT, nextId++, argb(result), null);
+        entries.add(entry);
+        touch(entry);
+        return entry.id;
+    }
+
+    public long replaceResult(int index, Bitmap result) {
+        Entry entry = new Entry(RESULT, nextId++, argb(result), null);
+        drop(entries.set(index, entry));
+        touch(entry);
+        return entry.id;
+    }
+
+    // Replaces the strokes from the base of index up to index with result. Strokes drawn after
+    // index, e.g. while result was being computed, stay on top of it.
+    public long commitResult(int index, Bitmap result) {
+        List<Entry> later = entries.subList(index + 1, entries.size());
+        List<Entry> kept = new ArrayList<>(later);
+        later.clear();
+        truncate(baseIndex(index));
+        long id = addResult(result);
+        entries.addAll(kept);
+        return id;
+    }
+
+    public long addStroke(StrokeMask.Stroke stroke) {
+        Entry entry = new Entry(STROKE, nextId++, null, stroke);
+        entries.add(entry);
+        memoryBytes += stroke.getBytes();
+        trim();
+        return entry.id;
+    }
+
+    // index of the result the state at index was drawn on
+    public int baseIndex(int index) {
+        while (index > 0 && entries.get(index).kind != RESULT) {
+            index--;
+        }
+        return index;
+    }
+
+    public boolean hasStrokes(int index) {
+        return entries.get(index).kind == STROKE;
+    }
+
+    // the result bitmap at index, decoded from disk if it was spilled; do not modify it
+    public Bitmap getResult(int index) {
+        Entry entry = entries.get(index);
+        if (entry.kind != RESULT) {
+            throw new IllegalArgumentException("Entry " + index + " is a stroke");
+        }
+        finishWrites();
+        if (entry.bitmap == null) {
+            entry.bitmap = load(entry);
+        }
+        touch(entry);
+        return entry.bitmap;
+    }
+
+    // a mutable bitmap of the state at index: its base result with the strokes drawn since
+    public Bitmap render(int index) {
+        int base = baseIndex(index);
+        Bitmap bitmap = getResult(base).copy(Bitmap.Config.ARGB_8888, true);
+        if (base == index) {
+            return bitmap;
+        }
+        // one path per stroke, so that overlapping strokes darken like they did while drawing
+        Canvas canvas = new Canvas(bitmap);
+        Path path = new Path();
+        for (int i = base + 1; i <= index; i++) {
+            StrokeMask.Stroke stroke = entries.get(i).stroke;
+            strokePaint.setStrokeWidth(stroke.width);
+            if (stroke.size() == 1) {
+                canvas.drawPoint(stroke.x(0), stroke.y(0), strokePaint);
+                continue;
+            }
+            path.rewind();
+            path.moveTo(stroke.x(0), stroke.y(0));
+            for (int p = 1; p < stroke.size(); p++) {
+                path.lineTo(stroke.x(p), stroke.y(p));
+            }
+            canvas.drawPath(path, strokePaint);
+        }
+        return bitmap;
+    }
+
+    // the strokes drawn on the base of index up to index, null when there are none
+    public StrokeMask strokeMask(int index) {
+        int base = baseIndex(index);
+        if (base == index) {
+            return null;
+        }
+        Entry result = entries.get(base);
+        StrokeMask strokes = new StrokeMask(result.width, result.height);
+        for (int i = base + 1; i <= index; i++) {
+            strokes.add(entries.get(i).stroke);
+        }
+        return strokes;
+    }
+
+    public long getMemoryBytes() {
+        return memoryBytes;
+    }
+
+    // spills every resident result except the one at keepIndex
+    public void spillAll(int keepIndex) {
+        finishWrites();
+        Entry keep = entries.get(keepIndex);
+        for (Iterator<Entry> it = resident.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (entry != keep && spill(entry)) {
+                it.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        truncate(-1);
+        deleteSpills();
+    }
+
+    // writes still running complete, their files are deleted right after
+    @Override
+    public void close() {
+        clear();
+        writer.shutdown();
+    }
+
+    private void touch(Entry entry) {
+        if (resident.remove(entry)) {
+            resident.add(entry);
+            return;
+        }
+        resident.add(entry);
+        memoryBytes += entry.bitmap.getByteCount();
+        trim();
+    }
+
+    // spills least recently used results until the budget is met, the most recent one stays
+    private void trim() {
+        finishWrites();
+        Iterator<Entry> it = resident.iterator();
+        while (memoryBytes > budgetBytes && resident.size() > 1 && it.hasNext()) {
+            Entry entry = it.next();
+            if (spill(entry)) {
+                it.remove();
+            }
+        }
+    }
+
+    // The result stops counting against the budget right away. Without a spill file yet, its
+    // bitmap is kept until the background write completes (see finishWrites).
+    private boolean spill(Entry entry) {
+        memoryBytes -= entry.bitmap.getByteCount();
+        if (entry.spill != null) {
+            entry.bitmap = null;
+        } else if (entry.writing == null) {
+            Bitmap bitmap = entry.bitmap;
+            File file = new File(spillDir, "result_" + entry.id + ".argb");
+            entry.writing = CompletableFuture.supplyAsync(() -> write(bitmap, file), writer);
+            pendingWrites.add(entry);
+        }
+        return true;
+    }
+
+    // runs on the writer thread; results are never modified, so the bitmap can be read here
+    private File write(Bitmap bitmap, File file) {
+        ByteBuffer pixels = ByteBuffer.allocate(bitmap.getByteCount());
+        bitmap.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        try {
+            if (!spillDir.isDirectory() && !spillDir.mkdirs()) {
+                throw new IOException("Unable to create " + spillDir);
+            }
+            try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+                while (pixels.hasRemaining()) {
+                    channel.write(pixels);
+                }
+            }
+        } catch (IOException e) {
+            file.delete();
+            throw new IllegalStateException(e);
+        }
+        return file;
+    }
+
+    // Takes over the spill files written since the last call. A result that was navigated to again
+    // meanwhile keeps its bitmap, one whose write failed becomes resident again like before.
+    private void finishWrites() {
+        for (Iterator<Entry> it = pendingWrites.iterator(); it.hasNext(); ) {
+            Entry entry = it.next();
+            if (!entry.writing.isDone()) {
+                continue;
+            }
+            it.remove();
+            try {
+                entry.spill = entry.writing.join();
+                if (!resident.contains(entry)) {
+                    entry.bitmap = null;
+                }
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unable to spill result " + entry.id, e);
+                if (resident.add(entry)) {
+                    memoryBytes += entry.bitmap.getByteCount();
+                }
+            }
+            entry.writing = null;
+        }
+    }
+
+    // spills are raw ARGB_8888 pixels, so every result is kept in that config
+    private static Bitmap argb(Bitmap bitmap) {
+        if (bitmap.getConfig() == Bitmap.Config.ARGB_8888) {
+            return bitmap;
+        }
+        return bitmap.copy(Bitmap.Config.ARGB_8888, false);
+    }
+
+    private Bitmap load(Entry entry) {
+        ByteBuffer pixels = ByteBuffer.allocate(entry.width * entry.height * 4);
+        try (FileChannel channel = new FileInputStream(entry.spill).getChannel()) {
+            while (pixels.hasRemaining() && channel.read(pixels) >= 0) {
+                // keep reading
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to load result " + entry.id, e);
+        }
+        pixels.flip();
+        Bitmap bitmap = Bitmap.createBitmap(entry.width, entry.height, Bitmap.Config.ARGB_8888);
+        bitmap.copyPixelsFromBuffer(pixels);
+        return bitmap;
+    }
+
+    private void drop(Entry entry) {
+        if (entry.kind == STROKE) {
+            memoryBytes -= entry.stroke.getBytes();
+            return;
+        }
+        if (resident.remove(entry)) {
+            memoryBytes -= entry.bitmap.getByteCount();
+        }
+        if (entry.writing != null) {
+            // deleted once written
+            entry.writing.thenAccept(File::delete);
+            pendingWrites.remove(entry);
+            entry.writing = null;
+        }
+        if (entry.spill != null) {
+            entry.spill.delete();
+        }
+    }
+
+    private void deleteSpills() {
+        File[] files = spillDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.inpainting;
+
+import android.content.ContentResolver;
+import android.content.ContentValues;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.provider.MediaStore;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Saves results off the main thread. Exports run one after another on a single thread, so a save
+// only starts writing once the previous one has completed. Each image is compressed once into a
+// reused in-memory buffer and written with a FileChannel to the app pictures directory and, when
+// a resolver is given, to the shared gallery.
+public class ImageExporter implements AutoCloseable {
+
+    public enum Format {
+        PNG("png", "image/png", 100),
+        WEBP("webp", "image/webp", 90),
+        JPEG("jpeg", "image/jpeg", 92);
+
+        public final String extension;
+        public final String mimeType;
+        // used when no quality is given; PNG ignores the quality
+        public final int defaultQuality;
+
+        Format(String extension, String mimeType, int defaultQuality) {
+            this.extension = extension;
+            this.mimeType = mimeType;
+            this.defaultQuality = defaultQuality;
+        }
+
+        @SuppressWarnings("deprecation")
+        Bitmap.CompressFormat compressFormat() {
+            switch (this) {
+                case PNG:
+                    return Bitmap.CompressFormat.PNG;
+                case WEBP:
+                    return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                            ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+                default:
+                    return Bitmap.CompressFormat.JPEG;
+            }
+        }
+
+        public Format next() {
+            Format[] formats = values();
+            return formats[(ordinal() + 1) % formats.length];
+        }
+    }
+
+    // ByteArrayOutputStream that hands out its array instead of a copy
+    private static class OutputBuffer extends ByteArrayOutputStream {
+        OutputBuffer(int size) {
+            super(size);
+        }
+
+        ByteBuffer contents() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+    }
+
+    // a bigger buffer is dropped after the save that needed it instead of being kept around
+    private static final int MAX_RETAINED_BYTES = 16 * 1024 * 1024;
+
+    private final ExecutorService worker;
+    private final File directory;
+    private final ContentResolver resolver;
+    // only touched by the worker thread
+    private OutputBuffer buffer;
+
+    // resolver may be null to keep the exports private to the app
+    public ImageExporter(File directory, ContentResolver resolver) {
+        this.directory = directory;
+        this.resolver = resolver;
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "export");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // bitmap must not be modified until the returned future completes
+    public CompletableFuture<File> export(Bitmap bitmap, String name, Format format, int quality) {
+        CompletableFuture<File> result = new CompletableFuture<>();
+        worker.execute(() -> {
+            try {
+                result.complete(write(bitmap, name, format, quality));
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        return result;
+    }
+
+    private File write(Bitmap bitmap, String name, Format format, int quality) throws IOException {
+        if (buffer == null) {
+            // a quarter of the raw pixels is enough for most JPEG and WEBP results
+            buffer = new OutputBuffer(Math.max(64 * 1024, bitmap.getByteCount() / 4));
+        }
+        buffer.reset();
+        if (!bitmap.compress(format.compressFormat(), quality, buffer)) {
+            throw new IOException("Unable to compress " + name + " as " + format);
+        }
+
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create " + directory);
+        }
+        File file = new File(directory, name + "." + format.extension);
+        try (FileChannel channel = new FileOutputStream(file).getChannel()) {
+            writeFully(channel, buffer.contents());
+        }
+        if (resolver != null) {
+            publish(name, format);
+        }
+        if (buffer.capacity() > MAX_RETAINED_BYTES) {
+            buffer = null;
+        }
+        return file;
+    }
+
+    // the same encoded bytes as a new gallery entry
+    private void publish(String name, Format format) throws IOException {
+        ContentValues values = new ContentValues();
+        values.put(MediaStore.Images.Media.TITLE, name);
+        values.put(MediaStore.Images.Media.DISPLAY_NAME, name + "." + format.extension);
+        values.put(MediaStore.Images.Media.DESCRIPTION, "Inpainting result.");
+        values.put(MediaStore.Images.Media.MIME_TYPE, format.mimeType);
+        Uri uri = resolver.insert(MediaStore.Images.Media.EXTERNAL_CONTENT_URI, values);
+        if (uri == null) {
+            throw new IOException("Unable to add " + name + " to the gallery");
+        }
+        try (ParcelFileDescriptor descriptor = resolver.openFileDescriptor(uri, "w")) {
+            if (descriptor == null) {
+                throw new IOException("Unable to open " + uri);
+            }
+            try (FileChannel channel = new FileOutputStream(descriptor.getFileDescriptor()).getChannel()) {
+                writeFully(channel, buffer.contents());
+            }
+        } catch (IOException | RuntimeException e) {
+            resolver.delete(uri, null, null);
+            throw e;
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer data) throws IOException {
+        while (data.hasRemaining()) {
+            channel.write(data);
+        }
+    }
+
+    // exports already submitted still run
+    @Override
+    public void close() {
+        worker.shutdown();
+    }
+}
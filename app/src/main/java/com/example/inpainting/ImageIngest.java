@@ -0,0 +1,171 @@
+package com.example.inpainting;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Rect;
+import android.net.Uri;
+import android.os.Build;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Opens a picked photo without decoding it at full size. The bounds are read first, the working
+// copy is decoded with the largest power of two inSampleSize that still covers the requested size,
+// and full-resolution pixels are only pulled through a BitmapRegionDecoder for the windows around
+// the mask, subsampled again down to what the model input needs.
+public class ImageIngest implements ImageSource, AutoCloseable {
+
+    private static final String TAG = "ImageIngest";
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    public final int sourceWidth;
+    public final int sourceHeight;
+
+    // size of the working copy that windows are given in
+    private int workingWidth;
+    private int workingHeight;
+
+    private ParcelFileDescriptor descriptor;
+    private BitmapRegionDecoder regionDecoder;
+    private boolean closed = false;
+
+    public ImageIngest(ContentResolver resolver, Uri uri) throws IOException {
+        this.resolver = resolver;
+        this.uri = uri;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        try (InputStream in = open()) {
+            BitmapFactory.decodeStream(in, null, options);
+        }
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            throw new IOException("Unable to read the size of " + uri);
+        }
+        this.sourceWidth = options.outWidth;
+        this.sourceHeight = options.outHeight;
+        this.workingWidth = sourceWidth;
+        this.workingHeight = sourceHeight;
+    }
+
+    // the working copy at exactly width x height
+    public Bitmap decode(int width, int height) throws IOException {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(sourceWidth, sourceHeight, width, height);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap decoded;
+        try (InputStream in = open()) {
+            decoded = BitmapFactory.decodeStream(in, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode " + uri);
+        }
+        Log.d(TAG, sourceWidth + "x" + sourceHeight + " decoded at 1/" + options.inSampleSize);
+        workingWidth = width;
+        workingHeight = height;
+        Bitmap scaled = Bitmap.createScaledBitmap(decoded, width, height, true);
+        if (scaled != decoded) {
+            decoded.recycle();
+        }
+        return scaled;
+    }
+
+    @Override
+    public synchronized PixelImage sample(MaskRegion window, int width, int height) {
+        if (closed) {
+            return null;
+        }
+        try {
+            if (regionDecoder == null) {
+                descriptor = resolver.openFileDescriptor(uri, "r");
+                if (descriptor == null) {
+                    closed = true;
+                    return null;
+                }
+                regionDecoder = newRegionDecoder(descriptor);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Region decoding is not available for " + uri, e);
+            close();
+            return null;
+        }
+
+        int[] rect = sourceRect(window, workingWidth, workingHeight, sourceWidth, sourceHeight);
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = sampleSize(rect[2] - rect[0], rect[3] - rect[1], width, height);
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap region = regionDecoder.decodeRegion(new Rect(rect[0], rect[1], rect[2], rect[3]), options);
+        if (region == null) {
+            return null;
+        }
+        Bitmap scaled = Bitmap.createScaledBitmap(region, width, height, true);
+        if (scaled != region) {
+            region.recycle();
+        }
+        PixelImage pixels = InpaintingModel.pixels(scaled);
+        scaled.recycle();
+        return pixels;
+    }
+
+    @SuppressWarnings("deprecation")
+    private static BitmapRegionDecoder newRegionDecoder(ParcelFileDescriptor descriptor) throws IOException {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                ? BitmapRegionDecoder.newInstance(descriptor)
+                : BitmapRegionDecoder.newInstance(descriptor.getFileDescriptor(), false);
+    }
+
+    // Largest power of two that keeps a width x height image at least reqWidth x reqHeight,
+    // the rounding BitmapFactory applies to inSampleSize anyway.
+    public static int sampleSize(int width, int height, int reqWidth, int reqHeight) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= reqWidth && height / (sampleSize * 2) >= reqHeight) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // left, top, right, bottom of a working-copy window in source pixels, rounded outwards
+    public static int[] sourceRect(MaskRegion window, int workingWidth, int workingHeight,
+                                   int sourceWidth, int sourceHeight) {
+        if (window == null) {
+            return new int[] {0, 0, sourceWidth, sourceHeight};
+        }
+        double scaleX = (double) sourceWidth / workingWidth;
+        double scaleY = (double) sourceHeight / workingHeight;
+        return new int[] {
+                Math.max(0, (int) Math.floor(window.left * scaleX)),
+                Math.max(0, (int) Math.floor(window.top * scaleY)),
+                Math.min(sourceWidth, (int) Math.ceil(window.right * scaleX)),
+                Math.min(sourceHeight, (int) Math.ceil(window.bottom * scaleY))
+        };
+    }
+
+    private InputStream open() throws FileNotFoundException {
+        InputStream in = resolver.openInputStream(uri);
+        if (in == null) {
+            throw new FileNotFoundException("Unable to open " + uri);
+        }
+        return in;
+    }
+
+    @Override
+    public synchronized void close() {
+        closed = true;
+        if (regionDecoder != null) {
+            regionDecoder.recycle();
+            regionDecoder = null;
+        }
+        if (descriptor != null) {
+            try {
+                descriptor.close();
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to close " + uri, e);
+            }
+            descriptor = null;
+        }
+    }
+}
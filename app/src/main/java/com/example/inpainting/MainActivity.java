@@ -1,27 +1,28 @@
 package com.example.inpainting;
 
 import android.annotation.SuppressLint;
+import android.app.ActivityManager;
 import android.content.Intent;
-import android.content.res.Resources;
 import android.graphics.Bitmap;
 import android.graphics.BitmapFactory;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.PorterDuff;
-import android.graphics.PorterDuffXfermode;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
-import android.provider.MediaStore;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.MotionEvent;
 import android.view.View;
+import android.widget.Button;
 import android.widget.ImageButton;
 import android.widget.ImageView;
 import android.widget.SeekBar;
 import android.widget.TextView;
+import android.widget.Toast;
 
 import androidx.activity.result.ActivityResult;
 import androidx.activity.result.ActivityResultCallback;
@@ -31,16 +32,15 @@ import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 
 import ai.onnxruntime.OrtException;
 
 
-public class MainActivity extends AppCompatActivity implements View.OnClickListener, InpaintingTask.TaskListener {
+public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
     private ActivityResultLauncher<Intent> resultLauncher;
 
@@ -51,6 +51,8 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private int imgHeight = 1024;
     private ImageButton confirmButton;
 
+    private Button rerollButton;
+
     private ImageButton cancelButton;
 
     private ImageButton openButton;
@@ -69,26 +71,25 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
     private TextView brush_text;
 
-    private Bitmap mask = null;
+    private StrokeMask mask = null;
 
     private Bitmap resMask;
 
     private Bitmap src_img;
 
-    private ArrayList<Bitmap> bitmapArray;  // save the inpainting results
+    // the picked photo, read again at full resolution around the mask; null for the bundled image
+    private ImageIngest ingest;
 
-    private ArrayList<Bitmap> maskedArray;  // save the drawing process
+    private HistoryStore history;  // results and strokes, for undo/redo
 
-    private ArrayList<Bitmap> maskArray;  // save the drawing mask
+    private int current_idx = 0;
 
-    private ArrayList<Bitmap> allArray;   // save all bitmaps
+    private Bitmap displayBitmap;  // the state at current_idx, strokes are drawn onto it
 
-    private int current_idx = 0;
+    private StrokeMask.Stroke stroke;  // the stroke being drawn, as a brush path
 
     private Canvas drawCanvas;
 
-    private Canvas maskCanvas;
-
     private Paint paint;
 
     private float startX, startY, endX, endY;
@@ -100,6 +101,32 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
     private InpaintingModel inpaintingModel;
 
+    // inference runs one request at a time; a newer confirm replaces a pending one
+    private InferenceScheduler scheduler;
+
+    private CompletableFuture<Bitmap[]> inpaintingRequest;
+
+    // saves run in order on their own thread
+    private ImageExporter exporter;
+
+    private ImageExporter.Format exportFormat = ImageExporter.Format.JPEG;
+
+    private int exportQuality = ImageExporter.Format.JPEG.defaultQuality;
+
+    // input, mask and result of the last inference, kept for "another result"
+    private Bitmap lastInput;
+
+    private StrokeMask lastMask;
+
+    private ImageSource lastDetail;
+
+    private long lastResultId = -1;
+
+    // a result that arrived while a stroke was being drawn, applied once the stroke is committed
+    private Runnable pendingResult;
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
     private static final String TAG = "MainActivity";
 
 
@@ -109,17 +136,32 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         try {
-            Resources resources = getResources();
-            inpaintingModel = new InpaintingModel(resources);
+            inpaintingModel = new InpaintingModel(this);
+            inpaintingModel.setRegionMode(true);
+            inpaintingModel.setIncrementalMode(true);
+            // small masks take the MI-GAN fast path, so does everything once the generator gets slower than this
+            inpaintingModel.getEnginePolicy().setLatencyBudgetNanos(1500L * 1000 * 1000);
+            // accelerated providers are only used where they match the CPU output
+            inpaintingModel.setProviderPriority(ExecutionProvider.XNNPACK, ExecutionProvider.NNAPI, ExecutionProvider.CPU);
+            ActivityManager activityManager = (ActivityManager) getSystemService(ACTIVITY_SERVICE);
+            if (activityManager != null && activityManager.isLowRamDevice()) {
+                // keep roughly one pipeline resident on low-end devices
+                inpaintingModel.setSessionMemoryBudget(activityManager.getMemoryClass() * 1024L * 1024L);
+            }
 
         } catch (OrtException | IOException e) {
             throw new RuntimeException(e);
         }
+        // one pending request per key: the inpainting, the warm-up and the profile benchmark
+        scheduler = new InferenceScheduler(mainHandler::post, 3);
+        exporter = new ImageExporter(getExternalFilesDir(Environment.DIRECTORY_PICTURES), getContentResolver());
+        warmUpModel();
 
         setContentView(R.layout.activity_main);
 
         imageView = findViewById(R.id.imageView);
         confirmButton = findViewById(R.id.button_confirm);
+        rerollButton = findViewById(R.id.button_reroll);
         cancelButton = findViewById(R.id.button_clear);
         saveButton = findViewById(R.id.button_save);
         openButton = findViewById(R.id.button_open);
@@ -133,10 +175,6 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         brush_text.setText(String.valueOf(brushSize));
 
 
-        // 加载图片资源并设置给ImageView
-        src_img = BitmapFactory.decodeResource(getResources(), R.drawable.input);
-        init_res();
-
         paint = new Paint();
         paint.setAntiAlias(true);
         if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
@@ -146,20 +184,27 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         paint.setStrokeCap(Paint.Cap.ROUND);
         paint.setStrokeWidth(brushSize);
 
+        // results beyond an eighth of the heap class are spilled to disk
+        long historyBudget = ((ActivityManager) getSystemService(ACTIVITY_SERVICE)).getMemoryClass() * 1024L * 1024L / 8;
+        history = new HistoryStore(new File(getCacheDir(), "history"), historyBudget, paint.getColor());
+
+        // 加载图片资源并设置给ImageView
+        src_img = BitmapFactory.decodeResource(getResources(), R.drawable.input);
+        init_res();
+
         imageView.setOnTouchListener((v, event) -> {
             int action = event.getAction();
             switch (action) {
                 case MotionEvent.ACTION_DOWN:
                     updateArray();
-                    Bitmap copyBitmap_ = allArray.get(allArray.size() - 1).copy(Bitmap.Config.ARGB_8888,true);
-                    resetCanvas(copyBitmap_);
+                    beginStroke();
 
                     // 记录起始点位置，并开始涂抹
                     startX = event.getX();
                     startY = event.getY();
 
                     drawCanvas.drawCircle(startX,startY,brushSize / 8.0f,paint);
-                    maskCanvas.drawCircle(startX,startY,brushSize / 8.0f,paint);
+                    stroke.add(startX, startY);
                     isDrawing = true;
                     Log.d(TAG, "touch image");
                     Log.d(TAG, "isDrawing: " + isDrawing);
@@ -177,7 +222,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                         Log.d(TAG, "endX: " + endX);
                         Log.d(TAG, "endY: " + endY);
                         drawCanvas.drawLine(startX, startY, endX, endY, paint);
-                        maskCanvas.drawLine(startX, startY, endX, endY, paint);
+                        stroke.add(endX, endY);
                         imageView.invalidate();
 
                         startX = endX;
@@ -188,6 +233,11 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 case MotionEvent.ACTION_UP:
                     if (isDrawing) {
                         isDrawing = false;
+                        commitStroke();
+                    }
+                    if (pendingResult != null) {
+                        pendingResult.run();
+                        pendingResult = null;
                     }
                     imageView.invalidate();
                     Log.d(TAG, "isDrawing: " + isDrawing);
@@ -202,6 +252,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         });
 
         confirmButton.setOnClickListener(this);
+        rerollButton.setOnClickListener(this);
         cancelButton.setOnClickListener(this);
         saveButton.setOnClickListener(this);
         openButton.setOnClickListener(this);
@@ -239,14 +290,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                     Intent intent = result.getData();
                     Uri picUri = intent.getData();
                     if (picUri != null){
-                        InputStream inputStream;
-                        try {
-                            inputStream = getContentResolver().openInputStream(picUri);
-                        } catch (FileNotFoundException e) {
-                            throw new RuntimeException(e);
-                        }
-                        src_img = BitmapFactory.decodeStream(inputStream);
-                        init_res();
+                        openImage(picUri);
                     }
                 }
 
@@ -254,6 +298,27 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         });
 
 
+        // benchmark mode: long press the time text to find the fastest execution profile for the generator
+        textView.setOnLongClickListener(v -> {
+            runProfileBenchmark();
+            return true;
+        });
+
+        // tap the time text to see the per-stage latency of the inferences so far
+        textView.setOnClickListener(v -> showMetrics());
+
+        // long press confirm to keep the current style for the next runs, again to release it
+        confirmButton.setOnLongClickListener(v -> {
+            toggleStylePin();
+            return true;
+        });
+
+        // long press save to switch between JPEG, PNG and WEBP
+        saveButton.setOnLongClickListener(v -> {
+            toggleExportFormat();
+            return true;
+        });
+
         showButton.setOnLongClickListener(v -> {
             showSrcimg();
             return true;
@@ -267,123 +332,223 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         });
     }
 
-    private void init_res(){
-        src_img = Bitmap.createScaledBitmap(src_img,imgWidth,imgHeight,true);
-
-        bitmapArray = new ArrayList<>();
-        bitmapArray.add(src_img);
-
-        maskedArray = new ArrayList<>();
-        maskArray = new ArrayList<>();
+    // runs on the inference thread like every other session run, so it never competes with one
+    private void warmUpModel(){
+        long stime = System.nanoTime();
+        scheduler.submit("warmup", progress -> {
+            inpaintingModel.warmUp();
+            return null;
+        }, null).whenComplete((result, error) -> {
+            if (error == null) {
+                Log.d(TAG, "Model warm-up took " + (System.nanoTime() - stime) / 1000000 + " ms");
+            } else if (!(error instanceof CancellationException)) {
+                Log.e(TAG, "Model warm-up failed", error);
+            }
+        });
+    }
 
-        allArray = new ArrayList<>();
-        allArray.addAll(bitmapArray);
-        current_idx = allArray.size() - 1 ;
+    private void runProfileBenchmark(){
+        // one benchmark at a time, the long press is enabled again once it completes
+        textView.setLongClickable(false);
+        textView.setText("Benchmarking execution profiles...");
+        scheduler.submit("benchmark", progress -> inpaintingModel.benchmarkProfiles(
+                InpaintingModel.GENERATOR, ExecutionProfile.presets(), 5), null)
+                .whenCompleteAsync((results, error) -> {
+                    if (isDestroyed()) {
+                        return;
+                    }
+                    textView.setLongClickable(true);
+                    if (error == null) {
+                        for (ProfileBenchmark.Result result : results) {
+                            Log.d(TAG, "profile " + result + " " + result.profile);
+                        }
+                        textView.setText("Fastest profile: " + results.get(0));
+                    } else if (error instanceof CancellationException) {
+                        textView.setText("Benchmark cancelled");
+                    } else {
+                        Log.e(TAG, "Benchmark failed", error);
+                        textView.setText("Benchmark failed: " + error.getMessage());
+                    }
+                }, mainHandler::post);
+    }
 
-        imageView.setImageBitmap(src_img.copy(Bitmap.Config.ARGB_8888,true));
+    private void toggleStylePin(){
+        if (inpaintingModel.getPinnedStyle() == null) {
+            long seed = inpaintingModel.pinStyle();
+            Toast.makeText(this, "Style " + Long.toHexString(seed) + " pinned", Toast.LENGTH_SHORT).show();
+        } else {
+            inpaintingModel.unpinStyle();
+            Toast.makeText(this, "Style unpinned", Toast.LENGTH_SHORT).show();
+        }
     }
 
+    private void showMetrics(){
+        InferenceMetrics metrics = inpaintingModel.getMetrics();
+        StringBuilder text = new StringBuilder();
+        for (InferenceMetrics.StageStats stats : metrics.getStageStats().values()) {
+            if (stats.count > 0) {
+                text.append(stats).append('\n');
+            }
+        }
+        text.append('\n').append(metrics.getCounters());
+        new AlertDialog.Builder(this)
+                .setTitle("Inference metrics")
+                .setMessage(text.toString())
+                .setPositiveButton("OK", null)
+                .show();
+    }
 
-    private void resetCanvas(Bitmap bitmap){
-        Bitmap maskBitmap = Bitmap.createBitmap(bitmap.getWidth(), bitmap.getHeight(), Bitmap.Config.ARGB_8888);
-        maskedArray.add(bitmap);
-        maskArray.add(maskBitmap);
-        drawCanvas = new Canvas(maskedArray.get(maskedArray.size() - 1));
-        maskCanvas = new Canvas(maskArray.get(maskArray.size() - 1));
-        imageView.setImageBitmap(bitmap);
-        imageView.invalidate();
-        allArray = new ArrayList<>();
-        allArray.addAll(bitmapArray);
-        allArray.addAll(maskedArray);
-        current_idx = allArray.size() - 1 ;
+    // only the bounds and a subsampled working copy are decoded here
+    private void openImage(Uri picUri){
+        ImageIngest opened;
+        try {
+            opened = new ImageIngest(getContentResolver(), picUri);
+            src_img = opened.decode(imgWidth, imgHeight);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+        if (ingest != null) {
+            ingest.close();
+        }
+        ingest = opened;
+        init_res();
     }
 
-    private void createMaskBitmap() {
-        Bitmap tmp = bitmapArray.get(bitmapArray.size() - 1);
-        Bitmap blackbitmap = Bitmap.createBitmap(tmp.getWidth(), tmp.getHeight(), Bitmap.Config.ARGB_8888);
-        Bitmap maskbitmap = Bitmap.createBitmap(tmp.getWidth(), tmp.getHeight(), Bitmap.Config.ARGB_8888);
+    private void init_res(){
+        src_img = Bitmap.createScaledBitmap(src_img,imgWidth,imgHeight,true);
 
-        Canvas canvas = new Canvas(blackbitmap);
-        canvas.drawColor(Color.BLACK);
+        history.reset(src_img);
+        current_idx = history.size() - 1 ;
 
-        canvas.setBitmap(maskbitmap);
+        showState();
+    }
 
-        for (int i = 0; i < maskArray.size() ; i++ ){
-            canvas.drawBitmap(maskArray.get(i), 0, 0, null);
-        }
 
-        Paint paint = new Paint();
-        paint.setAntiAlias(true);
-        paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.SRC_IN));
-        canvas.drawBitmap(blackbitmap, 0, 0, paint);
+    // renders the state at current_idx, spilled results are decoded here
+    private void showState(){
+        displayBitmap = history.render(current_idx);
+        drawCanvas = new Canvas(displayBitmap);
+        imageView.setImageBitmap(displayBitmap);
+        imageView.invalidate();
+    }
 
-        mask = maskbitmap.copy(Bitmap.Config.ARGB_8888,true);
+    private void beginStroke(){
+        stroke = new StrokeMask.Stroke(paint.getStrokeWidth());
+    }
 
+    // only the path is kept, the display already shows the stroke
+    private void commitStroke(){
+        history.addStroke(stroke);
+        stroke = null;
+        current_idx = history.size() - 1;
     }
 
-    private void saveImg(String path, Bitmap bitmap){
-        FileOutputStream fos = null;
-        try{
-            fos = new FileOutputStream(path);
-            bitmap.compress(Bitmap.CompressFormat.JPEG,100,fos);
-            MediaStore.Images.Media.insertImage(getContentResolver(), bitmap, "Inpainting_" + System.currentTimeMillis(), "Inpainting result.");
-        } catch (Exception e){
-            e.printStackTrace();
+    // the snapshot is compressed and written on the export thread, after any earlier save
+    private void saveImg(String name, Bitmap bitmap){
+        Bitmap snapshot = bitmap.copy(Bitmap.Config.ARGB_8888, false);
+        saveButton.setEnabled(false);
+        exporter.export(snapshot, name, exportFormat, exportQuality).whenCompleteAsync((file, error) -> {
+            if (isDestroyed()) {
+                return;
+            }
+            saveButton.setEnabled(true);
+            if (error != null) {
+                Log.e(TAG, "Unable to save " + name, error);
+                new AlertDialog.Builder(this)
+                        .setTitle("Save result")
+                        .setMessage("Failed to save the image!")
+                        .setNegativeButton("OK", null)
+                        .show();
+                return;
+            }
+            Log.d(TAG,"The image has been saved to: " + file);
             new AlertDialog.Builder(this)
                     .setTitle("Save result")
-                    .setMessage("Failed to save the image!")
-                    .setNegativeButton("OK", null)
+                    .setMessage("Successfully saved the image!")
+                    .setPositiveButton("OK", null)
                     .show();
-        } finally {
-            if (fos != null){
-                try{
-                    fos.close();
-                }catch (IOException e){
-                    e.printStackTrace();
-                }
-            }
-        }
-        Log.d(TAG,"The image has been saved to: " + path);
-        new AlertDialog.Builder(this)
-                .setTitle("Save result")
-                .setMessage("Successfully saved the image!")
-                .setPositiveButton("OK", null)
-                .show();
+        }, mainHandler::post);
+    }
 
+    private void toggleExportFormat(){
+        exportFormat = exportFormat.next();
+        exportQuality = exportFormat.defaultQuality;
+        Toast.makeText(this, "Saving as " + exportFormat, Toast.LENGTH_SHORT).show();
     }
 
     private void doConfirm(){
         updateArray();
-        if (! maskArray.isEmpty()){
-            createMaskBitmap();
-            InpaintingTask inpaintingTask = new InpaintingTask(this, textView);
-            inpaintingTask.execute(inpaintingModel,bitmapArray.get(bitmapArray.size() - 1),mask); // 传递参数
+        if (history.hasStrokes(current_idx)){
+            mask = history.strokeMask(current_idx);
+            int base = history.baseIndex(current_idx);
+            // the original photo is sharper than the working copy, later results only exist here
+            ImageSource detail = base == 0 ? ingest : null;
+            submitInpainting(history.getResult(base), mask, detail, current_idx, false);
         }
 
     }
 
-    private void updateArray(){
-        //when the img is being modified, current behavior should be the last element in array.
-        if (current_idx  <= bitmapArray.size() - 1){
-            bitmapArray = new ArrayList<>(allArray.subList(0, current_idx + 1)) ;
-            maskedArray.clear();
-            maskArray.clear();
-        } else if (current_idx < allArray.size() - 1) {
-            maskedArray = new ArrayList<>(allArray.subList(bitmapArray.size(), current_idx + 1)) ;
-            maskArray = new ArrayList<>(maskArray.subList(0, maskedArray.size())) ;
+    // same image and mask with another style; the encoder features of the last run are reused
+    private void doReroll(){
+        updateArray();
+        int last = history.size() - 1;
+        if (lastInput == null || current_idx != last || history.kind(last) != HistoryStore.RESULT
+                || history.id(last) != lastResultId) {
+            rerollButton.setEnabled(false);
+            return;
         }
+        inpaintingModel.unpinStyle();
+        submitInpainting(lastInput, lastMask, lastDetail, last, true);
+    }
 
-        allArray = new ArrayList<>();
-        allArray.addAll(bitmapArray);
-        allArray.addAll(maskedArray);
-        current_idx = allArray.size() - 1 ;
+    // maskIndex is the history state inMask was taken from (the result itself for a re-roll);
+    // strokes drawn after it while the request runs are kept
+    private void submitInpainting(Bitmap img, StrokeMask inMask, ImageSource detail, int maskIndex,
+                                  boolean reroll){
+        long maskId = history.id(maskIndex);
+        // the newest request wins, an earlier one still running stops at its next stage
+        if (inpaintingRequest != null) {
+            inpaintingRequest.cancel(false);
+        }
+        confirmButton.setImageResource(R.drawable.process);
+        textView.setText("Time cost: 0 ms");
+        CompletableFuture<Bitmap[]> request = scheduler.submit("inpainting",
+                progress -> inpaintingModel.Inference(img, inMask, detail, reroll, progress),
+                (stage, elapsedNanos) -> textView.setText(stage + ", time cost: " + elapsedNanos / 1000000 + " ms"));
+        inpaintingRequest = request;
+        request.whenCompleteAsync((result, error) -> {
+            if (request != inpaintingRequest || isDestroyed()) {
+                return;
+            }
+            inpaintingRequest = null;
+            confirmButton.setImageResource(R.drawable.ok);
+            if (error == null) {
+                lastInput = img;
+                lastMask = inMask;
+                lastDetail = detail;
+                Runnable apply = () -> onTaskCompleted(result, maskIndex, maskId, reroll);
+                if (isDrawing) {
+                    pendingResult = apply;
+                } else {
+                    apply.run();
+                }
+            } else if (!(error instanceof CancellationException)) {
+                Log.e(TAG, "Inpainting failed", error);
+                textView.setText("Inpainting failed: " + error.getMessage());
+            }
+        }, mainHandler::post);
+    }
+
+    private void updateArray(){
+        //when the img is being modified, current behavior should be the last element in array.
+        history.truncate(current_idx);
     }
 
     private void doClear(){
-        current_idx = bitmapArray.size() - 1;
+        current_idx = history.baseIndex(history.size() - 1);
         updateArray();
         handle_button_color();
-        resetCanvas(bitmapArray.get(bitmapArray.size() - 1).copy(Bitmap.Config.ARGB_8888,true));
+        showState();
     }
 
     private void showSrcimg(){
@@ -395,7 +560,7 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private void unshowSrcimg(){
         Bitmap unshow = BitmapFactory.decodeResource(getResources(), R.drawable.unshow);
         showButton.setImageBitmap(unshow);
-        imageView.setImageBitmap(allArray.get(current_idx));
+        imageView.setImageBitmap(displayBitmap);
     }
 
     private void handle_button_color(){
@@ -406,13 +571,13 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             backButton.setImageResource(R.drawable.back_gray);
         }
 
-        if (current_idx < allArray.size() - 1){
+        if (current_idx < history.size() - 1){
             forwardButton.setImageResource(R.drawable.forward);
         }else{
             forwardButton.setImageResource(R.drawable.forward_gray);
         }
 
-        if (maskArray.isEmpty()){
+        if (!history.hasStrokes(history.size() - 1)){
             cancelButton.setImageResource(R.drawable.undo_gray);
         }else {
             cancelButton.setImageResource(R.drawable.undo);
@@ -421,13 +586,13 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
 
     private void doBackward(){
         current_idx = Math.max(current_idx - 1, 0);
-        imageView.setImageBitmap(allArray.get(current_idx));
+        showState();
         handle_button_color();
     }
 
     private void doForward(){
-        current_idx = Math.min(current_idx + 1, allArray.size() - 1);
-        imageView.setImageBitmap(allArray.get(current_idx));
+        current_idx = Math.min(current_idx + 1, history.size() - 1);
+        showState();
         handle_button_color();
     }
 
@@ -435,15 +600,13 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     public void onClick(View v) {
         
         if (v.getId() == R.id.button_confirm){
-            confirmButton.setImageResource(R.drawable.process);
             doConfirm();
-            confirmButton.setImageResource(R.drawable.ok);
+        } else if (v.getId() == R.id.button_reroll) {
+            doReroll();
         } else if (v.getId() == R.id.button_clear) {
             doClear();
         } else if (v.getId() == R.id.button_save) {
-            String fileName = "Inpainting_" + System.currentTimeMillis() + ".jpeg";
-            String path = getExternalFilesDir(Environment.DIRECTORY_PICTURES).toString() + File.separatorChar + fileName;
-            saveImg(path,allArray.get(current_idx));
+            saveImg("Inpainting_" + System.currentTimeMillis(), displayBitmap);
         } else if (v.getId() == R.id.button_open) {
             Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
             intent.setType("image/*");
@@ -459,13 +622,55 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     }
 
     @Override
-    public void onTaskCompleted(Bitmap[] result) {
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (inpaintingModel != null) {
+            inpaintingModel.onTrimMemory(level);
+        }
+        if (history != null && level >= TRIM_MEMORY_RUNNING_LOW) {
+            // only the displayed base has to stay decoded
+            history.spillAll(history.baseIndex(current_idx));
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (scheduler != null) {
+            scheduler.close();
+        }
+        if (exporter != null) {
+            exporter.close();
+        }
+        if (inpaintingModel != null) {
+            inpaintingModel.close();
+        }
+        if (history != null) {
+            history.close();
+        }
+        if (ingest != null) {
+            ingest.close();
+        }
+    }
+
+    private void onTaskCompleted(Bitmap[] result, int maskIndex, long maskId, boolean replaceLast) {
+        if (maskIndex >= history.size() || history.id(maskIndex) != maskId) {
+            // the strokes of this inference were undone or another image was opened meanwhile
+            lastInput = null;
+            rerollButton.setEnabled(false);
+            textView.setText("Result discarded, its strokes were undone");
+            return;
+        }
         Bitmap src_img_temp = result[0].copy(Bitmap.Config.ARGB_8888,true);
-        bitmapArray.add(src_img_temp);
-        Bitmap copyBitmap = src_img_temp.copy(Bitmap.Config.ARGB_8888,true);
-        maskedArray.clear();
-        maskArray.clear();
+        if (replaceLast) {
+            lastResultId = history.replaceResult(maskIndex, src_img_temp);
+        } else {
+            lastResultId = history.commitResult(maskIndex, src_img_temp);
+        }
+        rerollButton.setEnabled(true);
         mask = null;
-        resetCanvas(copyBitmap);
+        current_idx = history.size() - 1;
+        handle_button_color();
+        showState();
     }
 }
\ No newline at end of file
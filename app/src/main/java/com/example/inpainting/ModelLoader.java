@@ -0,0 +1,99 @@
+package com.example.inpainting;
+
+import android.content.Context;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+// Extracts the raw model resources to app storage once, so sessions can be created from a file
+// path instead of a byte[] copy of every model on the Java heap.
+public class ModelLoader {
+
+    private static final String MODEL_DIR = "models";
+
+    private final Context context;
+    private final File modelDir;
+
+    // models are extracted again whenever the installed apk changes
+    private final String stamp;
+
+    public ModelLoader(Context context) {
+        this.context = context;
+        this.modelDir = new File(context.getFilesDir(), MODEL_DIR);
+        this.stamp = installStamp(context);
+    }
+
+    public File getModelDir() {
+        return modelDir;
+    }
+
+    public File extract(int rawId, String name) throws IOException {
+        File modelFile = new File(modelDir, name + ".onnx");
+        File stampFile = new File(modelDir, name + ".stamp");
+        if (modelFile.isFile() && stamp.equals(readStamp(stampFile))) {
+            return modelFile;
+        }
+        if (!modelDir.isDirectory() && !modelDir.mkdirs()) {
+            throw new IOException("Unable to create " + modelDir);
+        }
+
+        File tmpFile = new File(modelDir, name + ".onnx.tmp");
+        try (InputStream in = context.getResources().openRawResource(rawId);
+             OutputStream out = new FileOutputStream(tmpFile)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+        }
+        if (!tmpFile.renameTo(modelFile)) {
+            tmpFile.delete();
+            throw new IOException("Unable to move " + tmpFile + " to " + modelFile);
+        }
+        try (OutputStream out = new FileOutputStream(stampFile)) {
+            out.write(stamp.getBytes(StandardCharsets.UTF_8));
+        }
+        return modelFile;
+    }
+
+    private static String readStamp(File stampFile) {
+        if (!stampFile.isFile()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(stampFile)) {
+            byte[] bytes = new byte[(int) stampFile.length()];
+            int off = 0;
+            while (off < bytes.length) {
+                int read = in.read(bytes, off, bytes.length - off);
+                if (read < 0) {
+                    break;
+                }
+                off += read;
+            }
+            return new String(bytes, 0, off, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @SuppressWarnings("deprecation")
+    private static String installStamp(Context context) {
+        PackageManager packageManager = context.getPackageManager();
+        try {
+            PackageInfo info = Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                    ? packageManager.getPackageInfo(context.getPackageName(), PackageManager.PackageInfoFlags.of(0))
+                    : packageManager.getPackageInfo(context.getPackageName(), 0);
+            return String.valueOf(info.lastUpdateTime);
+        } catch (PackageManager.NameNotFoundException e) {
+            return "0";
+        }
+    }
+}
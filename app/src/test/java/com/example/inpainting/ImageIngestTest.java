@@ -0,0 +1,33 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Subsampling and window mapping of the photo ingest.
+ */
+public class ImageIngestTest {
+
+    @Test
+    public void sampleSizeKeepsAtLeastTheRequestedSize() {
+        // 48 MP photo for a 1024 working copy
+        assertEquals(4, ImageIngest.sampleSize(8000, 6000, 1024, 1024));
+        assertEquals(1, ImageIngest.sampleSize(1500, 1000, 1024, 1024));
+        assertEquals(2, ImageIngest.sampleSize(2048, 2048, 1024, 1024));
+        assertEquals(1, ImageIngest.sampleSize(2047, 4096, 1024, 1024));
+    }
+
+    @Test
+    public void sourceRectScalesAndRoundsOutwards() {
+        MaskRegion window = new MaskRegion(100, 200, 612, 712);
+
+        int[] rect = ImageIngest.sourceRect(window, 1024, 1024, 3000, 2000);
+
+        assertArrayEquals(new int[] {292, 390, 1793, 1391}, rect);
+        assertArrayEquals(new int[] {0, 0, 3000, 2000}, ImageIngest.sourceRect(null, 1024, 1024, 3000, 2000));
+        // never outside the source
+        rect = ImageIngest.sourceRect(new MaskRegion(0, 0, 1024, 1024), 1024, 1024, 3001, 2001);
+        assertArrayEquals(new int[] {0, 0, 3001, 2001}, rect);
+    }
+}
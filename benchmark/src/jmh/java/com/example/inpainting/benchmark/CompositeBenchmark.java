@@ -0,0 +1,71 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.BinaryMask;
+import com.example.inpainting.PixelCompositor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+// Postprocess: the model-resolution composite of the generator output and the original-resolution
+// composites, with the upscaled gray mask and with the exact native mask, at 4x the model size.
+@State(Scope.Thread)
+public class CompositeBenchmark {
+
+    private static final int ORIGINAL_SCALE = 4;
+
+    @Param({"256", "512"})
+    public int size;
+
+    private float[] fake;
+    private int[] gt;
+    private BinaryMask mask;
+    private int[] outPixels;
+    private int[] outMask;
+
+    private int[] oriGt;
+    private int[] oriFake;
+    private int[] oriMaskPixels;
+    private BinaryMask oriMask;
+    private int[] oriOut;
+
+    @Setup
+    public void setUp() {
+        int pixelCount = size * size;
+        fake = Fixtures.tensor(size, size, 3);
+        gt = Fixtures.image(size, size, 1);
+        mask = Fixtures.mask(size, size, 7);
+        outPixels = new int[pixelCount];
+        outMask = new int[pixelCount];
+
+        int ori = size * ORIGINAL_SCALE;
+        oriGt = Fixtures.image(ori, ori, 2);
+        oriFake = Fixtures.image(ori, ori, 4);
+        oriMask = Fixtures.mask(ori, ori, 7);
+        oriMaskPixels = new int[ori * ori];
+        for (int idx = 0; idx < oriMaskPixels.length; idx++) {
+            oriMaskPixels[idx] = oriMask.isHole(idx) ? PixelCompositor.BLACK : PixelCompositor.WHITE;
+        }
+        oriOut = new int[ori * ori];
+    }
+
+    @Benchmark
+    public int[] compositeTensor() {
+        PixelCompositor.compositeTensor(gt, mask, fake, 0, outPixels, outMask, size * size);
+        return outPixels;
+    }
+
+    @Benchmark
+    public int[] compositeUpscaled() {
+        PixelCompositor.compositeUpscaled(oriGt, oriFake, oriMaskPixels, oriOut, oriOut.length);
+        return oriOut;
+    }
+
+    @Benchmark
+    public int[] compositeMasked() {
+        PixelCompositor.compositeMasked(oriGt, oriFake, oriMask, oriOut, 0, oriOut.length);
+        return oriOut;
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.BinaryMask;
+
+import java.util.Random;
+
+// Deterministic inputs shared by the benchmarks: a photo-like gradient with noise and a mask of
+// a few thick brush strokes, about a tenth of the image.
+class Fixtures {
+
+    static int[] image(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int r = (x * 255 / width + random.nextInt(16)) & 0xFF;
+                int g = (y * 255 / height + random.nextInt(16)) & 0xFF;
+                int b = ((x + y) * 127 / (width + height) + random.nextInt(16)) & 0xFF;
+                pixels[y * width + x] = 0xFF000000 | r << 16 | g << 8 | b;
+            }
+        }
+        return pixels;
+    }
+
+    // drawn mask pixels: transparent background, translucent brush
+    static int[] brush(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        int radius = Math.max(2, width / 40);
+        for (int stroke = 0; stroke < 4; stroke++) {
+            int x = random.nextInt(width);
+            int y = random.nextInt(height);
+            for (int step = 0; step < width / 2; step++) {
+                x = Math.max(0, Math.min(width - 1, x + random.nextInt(5) - 2));
+                y = Math.max(0, Math.min(height - 1, y + random.nextInt(5) - 2));
+                for (int dy = -radius; dy <= radius; dy++) {
+                    for (int dx = -radius; dx <= radius; dx++) {
+                        int px = x + dx;
+                        int py = y + dy;
+                        if (px >= 0 && px < width && py >= 0 && py < height && dx * dx + dy * dy <= radius * radius) {
+                            pixels[py * width + px] = 0x660000CC;
+                        }
+                    }
+                }
+            }
+        }
+        return pixels;
+    }
+
+    static BinaryMask mask(int width, int height, long seed) {
+        int[] brush = brush(width, height, seed);
+        BinaryMask mask = new BinaryMask(width, height);
+        for (int idx = 0; idx < brush.length; idx++) {
+            if (brush[idx] != 0) {
+                mask.setHole(idx);
+            }
+        }
+        return mask;
+    }
+
+    // generator output in [-1, 1], 3 planes
+    static float[] tensor(int width, int height, long seed) {
+        Random random = new Random(seed);
+        float[] tensor = new float[3 * width * height];
+        for (int i = 0; i < tensor.length; i++) {
+            tensor[i] = random.nextFloat() * 2 - 1;
+        }
+        return tensor;
+    }
+}
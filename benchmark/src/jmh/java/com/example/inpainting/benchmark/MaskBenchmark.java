@@ -0,0 +1,56 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.BinaryMask;
+import com.example.inpainting.MaskEngine;
+import com.example.inpainting.ParallelPixels;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+// Mask binarization: luma histogram, Otsu's threshold and packing, at the model resolutions.
+@State(Scope.Thread)
+public class MaskBenchmark {
+
+    @Param({"256", "512", "1024"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParallelPixels parallel;
+    private int[] brush;
+    private int[] scratch;
+    private int[] histogram;
+
+    @Setup
+    public void setUp() {
+        parallel = new ParallelPixels(threads);
+        brush = Fixtures.brush(size, size, 7);
+        scratch = new int[brush.length];
+        histogram = new int[256];
+        for (int argb : brush) {
+            histogram[MaskEngine.luma(argb)]++;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallel.close();
+    }
+
+    // binarize overwrites its input, so every op starts from a fresh copy
+    @Benchmark
+    public BinaryMask binarize() {
+        System.arraycopy(brush, 0, scratch, 0, brush.length);
+        return MaskEngine.binarize(scratch, size, size, parallel);
+    }
+
+    @Benchmark
+    public int otsuThreshold() {
+        return MaskEngine.otsuThreshold(histogram, size * size);
+    }
+}
@@ -0,0 +1,23 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.LatentCache;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+// Gaussian noise of the mapping network input, a new seed per op like a style re-roll.
+@State(Scope.Thread)
+public class NoiseBenchmark {
+
+    @Param({"512"})
+    public int dim;
+
+    private long seed = 2023;
+
+    @Benchmark
+    public float[] noise() {
+        return LatentCache.noise(seed++, dim);
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.BinaryMask;
+import com.example.inpainting.PixelCompositor;
+import com.example.inpainting.SyntheticModels;
+import com.example.inpainting.TensorPacker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Collections;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+// Session runs of a synthetic generator at the model resolutions: the bare run and the whole
+// inference of one frame, preprocess fill + run + model-resolution composite.
+@State(Scope.Thread)
+public class SessionBenchmark {
+
+    @Param({"256", "512"})
+    public int size;
+
+    @Param({"16"})
+    public int hidden;
+
+    private OrtEnvironment environment;
+    private OrtSession.SessionOptions options;
+    private OrtSession session;
+    private FloatBuffer input;
+    private OnnxTensor inputTensor;
+    private Map<String, OnnxTensor> inputs;
+
+    private int[] pixels;
+    private BinaryMask mask;
+    private int[] outPixels;
+    private int[] outMask;
+
+    @Setup
+    public void setUp() throws OrtException {
+        environment = OrtEnvironment.getEnvironment();
+        options = new OrtSession.SessionOptions();
+        options.setOptimizationLevel(OrtSession.SessionOptions.OptLevel.ALL_OPT);
+        options.setIntraOpNumThreads(4);
+        session = environment.createSession(SyntheticModels.generator(size, hidden, 2023), options);
+
+        pixels = Fixtures.image(size, size, 1);
+        mask = Fixtures.mask(size, size, 7);
+        outPixels = new int[size * size];
+        outMask = new int[size * size];
+        input = ByteBuffer.allocateDirect(4 * 4 * size * size).order(ByteOrder.nativeOrder()).asFloatBuffer();
+        TensorPacker.pack(pixels, mask, input, 0, TensorPacker.LAYOUT_RGB_MASK, size * size, 0, size * size);
+        inputTensor = OnnxTensor.createTensor(environment, input, new long[]{1, 4, size, size});
+        inputs = Collections.singletonMap(SyntheticModels.INPUT, inputTensor);
+    }
+
+    @TearDown
+    public void tearDown() throws OrtException {
+        inputTensor.close();
+        session.close();
+        options.close();
+    }
+
+    @Benchmark
+    public float[] run() throws OrtException {
+        try (OrtSession.Result result = session.run(inputs)) {
+            return ((OnnxTensor) result.get(0)).getFloatBuffer().array();
+        }
+    }
+
+    @Benchmark
+    public int[] inference() throws OrtException {
+        int pixelCount = size * size;
+        // the direct buffer is wrapped by inputTensor, so the fill is seen by the next run
+        TensorPacker.pack(pixels, mask, input, 0, TensorPacker.LAYOUT_RGB_MASK, pixelCount, 0, pixelCount);
+        try (OrtSession.Result result = session.run(inputs)) {
+            float[] fake = ((OnnxTensor) result.get(0)).getFloatBuffer().array();
+            PixelCompositor.compositeTensor(pixels, mask, fake, 0, outPixels, outMask, pixelCount);
+        }
+        return outPixels;
+    }
+}
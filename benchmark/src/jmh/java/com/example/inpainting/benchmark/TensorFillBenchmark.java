@@ -0,0 +1,54 @@
+package com.example.inpainting.benchmark;
+
+import com.example.inpainting.BinaryMask;
+import com.example.inpainting.ParallelPixels;
+import com.example.inpainting.TensorPacker;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+// Preprocess: pixels and mask packed into the direct input buffer of the encoder.
+@State(Scope.Thread)
+public class TensorFillBenchmark {
+
+    @Param({"256", "512"})
+    public int size;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private ParallelPixels parallel;
+    private int[] pixels;
+    private BinaryMask mask;
+    private FloatBuffer input;
+
+    @Setup
+    public void setUp() {
+        parallel = new ParallelPixels(threads);
+        pixels = Fixtures.image(size, size, 1);
+        mask = Fixtures.mask(size, size, 7);
+        input = ByteBuffer.allocateDirect(4 * 4 * size * size).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    @TearDown
+    public void tearDown() {
+        parallel.close();
+    }
+
+    @Benchmark
+    public FloatBuffer fill() {
+        int pixelCount = size * size;
+        parallel.forRows(size, size, (stripe, fromRow, toRow) ->
+                TensorPacker.pack(pixels, mask, input, 0, TensorPacker.LAYOUT_RGB_MASK, pixelCount,
+                        fromRow * size, toRow * size));
+        return input;
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.inpainting;
+
+// Binarized mask packed one bit per pixel, row-major. A set bit marks a hole (a pixel to inpaint),
+// a clear bit a known pixel.
+public class BinaryMask {
+
+    public final int width;
+    public final int height;
+    private final long[] bits;
+
+    public BinaryMask(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.bits = new long[(width * height + 63) >>> 6];
+    }
+
+    public boolean isHole(int idx) {
+        return (bits[idx >>> 6] & (1L << idx)) != 0;
+    }
+
+    public boolean isHole(int x, int y) {
+        return isHole(y * width + x);
+    }
+
+    public void setHole(int idx) {
+        bits[idx >>> 6] |= 1L << idx;
+    }
+
+    public int size() {
+        return width * height;
+    }
+
+    public int countHoles() {
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    public boolean isEmpty() {
+        for (long word : bits) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Bounding box of every hole, or null if the mask is empty.
+    public MaskRegion bounds() {
+        int minX = width, minY = height, maxX = -1, maxY = -1;
+        for (int w = 0; w < bits.length; w++) {
+            long word = bits[w];
+            while (word != 0) {
+                int idx = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+                int x = idx % width;
+                int y = idx / width;
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                maxY = y;
+            }
+        }
+        if (maxX < 0) {
+            return null;
+        }
+        return new MaskRegion(minX, minY, maxX + 1, maxY + 1);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.inpainting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+
+// Core counts used to size the ONNX Runtime thread pools.
+public class CpuInfo {
+
+    private static int performanceCores = -1;
+
+    public static int cores() {
+        return Runtime.getRuntime().availableProcessors();
+    }
+
+    // Cores of the fastest cluster on big.LITTLE parts, read from cpufreq.
+    // Falls back to half of the available cores when cpufreq is not readable.
+    public static synchronized int performanceCores() {
+        if (performanceCores > 0) {
+            return performanceCores;
+        }
+        int cores = cores();
+        long maxFreq = 0;
+        int count = 0;
+        for (int i = 0; i < cores; i++) {
+            long freq = readLong(new File("/sys/devices/system/cpu/cpu" + i + "/cpufreq/cpuinfo_max_freq"));
+            if (freq <= 0) {
+                continue;
+            }
+            if (freq > maxFreq) {
+                maxFreq = freq;
+                count = 1;
+            } else if (freq == maxFreq) {
+                count++;
+            }
+        }
+        // a single prime core is paired with the next cluster in practice
+        if (count == 1 && cores > 1) {
+            count = 2;
+        }
+        performanceCores = (count > 0) ? count : Math.max(1, cores / 2);
+        return performanceCores;
+    }
+
+    private static long readLong(File file) {
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line = reader.readLine();
+            return (line == null) ? -1 : Long.parseLong(line.trim());
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.example.inpainting;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+// Tensors matching a session's declared inputs, used for timing, warm-up and probe runs.
+// Dynamic dimensions are set to 1.
+public class DummyInputs {
+
+    // all zeros
+    public static Map<String, OnnxTensor> create(OrtEnvironment environment, OrtSession session) throws OrtException {
+        return create(environment, session, null);
+    }
+
+    // floating point inputs filled with uniform values in [-1, 1) from a fixed seed, so that
+    // two sessions of the same model see identical inputs
+    public static Map<String, OnnxTensor> random(OrtEnvironment environment, OrtSession session, long seed)
+            throws OrtException {
+        return create(environment, session, new Random(seed));
+    }
+
+    private static Map<String, OnnxTensor> create(OrtEnvironment environment, OrtSession session, Random random)
+            throws OrtException {
+        Map<String, OnnxTensor> inputs = new TreeMap<>();
+        try {
+            for (Map.Entry<String, NodeInfo> entry : session.getInputInfo().entrySet()) {
+                if (!(entry.getValue().getInfo() instanceof TensorInfo)) {
+                    throw new OrtException("Input " + entry.getKey() + " is not a tensor");
+                }
+                inputs.put(entry.getKey(), tensor(environment, (TensorInfo) entry.getValue().getInfo(), random));
+            }
+        } catch (OrtException e) {
+            close(inputs);
+            throw e;
+        }
+        return inputs;
+    }
+
+    public static void close(Map<String, OnnxTensor> inputs) {
+        for (OnnxTensor tensor : inputs.values()) {
+            tensor.close();
+        }
+        inputs.clear();
+    }
+
+    private static OnnxTensor tensor(OrtEnvironment environment, TensorInfo info, Random random) throws OrtException {
+        long[] shape = info.getShape().clone();
+        long elements = 1;
+        for (int i = 0; i < shape.length; i++) {
+            if (shape[i] < 0) {
+                shape[i] = 1;
+            }
+            elements *= shape[i];
+        }
+        OnnxJavaType type = info.type;
+        ByteBuffer data = ByteBuffer.allocateDirect((int) elements * type.size).order(ByteOrder.nativeOrder());
+        switch (type) {
+            case FLOAT:
+                FloatBuffer floats = data.asFloatBuffer();
+                if (random != null) {
+                    for (int i = 0; i < elements; i++) {
+                        floats.put(i, random.nextFloat() * 2.0f - 1.0f);
+                    }
+                }
+                return OnnxTensor.createTensor(environment, floats, shape);
+            case DOUBLE:
+                DoubleBuffer doubles = data.asDoubleBuffer();
+                if (random != null) {
+                    for (int i = 0; i < elements; i++) {
+                        doubles.put(i, random.nextDouble() * 2.0 - 1.0);
+                    }
+                }
+                return OnnxTensor.createTensor(environment, doubles, shape);
+            case INT64:
+                return OnnxTensor.createTensor(environment, data.asLongBuffer(), shape);
+            case INT32:
+                return OnnxTensor.createTensor(environment, data.asIntBuffer(), shape);
+            case INT8:
+            case UINT8:
+                return OnnxTensor.createTensor(environment, data, shape, type);
+            default:
+                throw new OrtException("Unsupported dummy input type " + type);
+        }
+    }
+}
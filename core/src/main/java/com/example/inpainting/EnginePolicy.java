@@ -0,0 +1,72 @@
+package com.example.inpainting;
+
+// Picks the engine of an inference. MI-GAN is a single session and much cheaper than the
+// mapping -> encoder -> generator pipeline, which in turn handles large holes better, so:
+//  - a forced engine always wins,
+//  - re-rolls need the generator, the only engine with styles,
+//  - masks covering at most smallMaskFraction of the image go to MI-GAN,
+//  - on large images (largeImagePixels and up) MI-GAN, which works at twice the resolution, also
+//    takes masks up to twice that fraction,
+//  - with a latency budget, MI-GAN is used when the generator's recent latency does not fit in it
+//    and MI-GAN's does better,
+//  - everything else goes to the generator.
+public class EnginePolicy {
+
+    private final String generator;
+    private final String migan;
+
+    private volatile String forced;
+    private volatile float smallMaskFraction = 0.08f;
+    private volatile long largeImagePixels = 4L * 1024 * 1024;
+    private volatile long latencyBudgetNanos = 0;
+
+    public EnginePolicy(String generator, String migan) {
+        this.generator = generator;
+        this.migan = migan;
+    }
+
+    // null to let the policy decide
+    public void setForcedEngine(String engine) {
+        this.forced = engine;
+    }
+
+    public String getForcedEngine() {
+        return forced;
+    }
+
+    public void setSmallMaskFraction(float smallMaskFraction) {
+        this.smallMaskFraction = smallMaskFraction;
+    }
+
+    public void setLargeImagePixels(long largeImagePixels) {
+        this.largeImagePixels = largeImagePixels;
+    }
+
+    // 0 disables the latency rule
+    public void setLatencyBudgetNanos(long latencyBudgetNanos) {
+        this.latencyBudgetNanos = latencyBudgetNanos;
+    }
+
+    // Latencies are recent per-run estimates, 0 when the engine has not run yet.
+    public String choose(float holeFraction, long imagePixels, boolean variation,
+                         long generatorNanos, long miganNanos) {
+        String engine = forced;
+        if (engine != null) {
+            return engine;
+        }
+        if (variation) {
+            return generator;
+        }
+        if (holeFraction <= smallMaskFraction) {
+            return migan;
+        }
+        if (imagePixels >= largeImagePixels && holeFraction <= 2 * smallMaskFraction) {
+            return migan;
+        }
+        long budget = latencyBudgetNanos;
+        if (budget > 0 && generatorNanos > budget && miganNanos < generatorNanos) {
+            return migan;
+        }
+        return generator;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.inpainting;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+// Encoder -> generator binding, resolved once per pair of loaded sessions. Every generator input
+// is bound to the encoder output of the same name; inputs without one take the remaining outputs
+// in order. Each binding is checked for dtype and shape before the first run, so a re-exported
+// model with renamed or reordered outputs fails loudly instead of producing corrupted images.
+public class ExecutionPlan {
+
+    public static final String ENCODER_IMAGE = "input";
+    public static final String ENCODER_STYLE = "in_ws";
+
+    private static final Logger LOG = Logger.getLogger(ExecutionPlan.class.getName());
+
+    // names, dtypes and shapes of a session's inputs or outputs, in session order
+    public static class Signature {
+        final String[] names;
+        final OnnxJavaType[] types;
+        final long[][] shapes;
+
+        public Signature(String[] names, OnnxJavaType[] types, long[][] shapes) {
+            this.names = names;
+            this.types = types;
+            this.shapes = shapes;
+        }
+
+        static Signature of(Map<String, NodeInfo> infos) throws OrtException {
+            int n = infos.size();
+            String[] names = new String[n];
+            OnnxJavaType[] types = new OnnxJavaType[n];
+            long[][] shapes = new long[n][];
+            int i = 0;
+            for (Map.Entry<String, NodeInfo> entry : infos.entrySet()) {
+                if (!(entry.getValue().getInfo() instanceof TensorInfo)) {
+                    throw new OrtException(entry.getKey() + " is not a tensor");
+                }
+                TensorInfo info = (TensorInfo) entry.getValue().getInfo();
+                names[i] = entry.getKey();
+                types[i] = info.type;
+                shapes[i] = info.getShape();
+                i++;
+            }
+            return new Signature(names, types, shapes);
+        }
+
+        int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i].equals(name)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+
+    private final OrtSession encoder;
+    private final OrtSession generator;
+    private final String[] generatorInputs;
+    // encoder output index feeding each generator input
+    private final int[] sources;
+
+    private ExecutionPlan(OrtSession encoder, OrtSession generator, String[] generatorInputs, int[] sources) {
+        this.encoder = encoder;
+        this.generator = generator;
+        this.generatorInputs = generatorInputs;
+        this.sources = sources;
+    }
+
+    public static ExecutionPlan compile(OrtSession encoder, OrtSession generator) throws OrtException {
+        Signature encoderInputs = Signature.of(encoder.getInputInfo());
+        if (encoderInputs.indexOf(ENCODER_IMAGE) < 0 || encoderInputs.indexOf(ENCODER_STYLE) < 0) {
+            throw new OrtException("Encoder inputs " + Arrays.toString(encoderInputs.names) + " lack "
+                    + ENCODER_IMAGE + " or " + ENCODER_STYLE);
+        }
+        Signature outputs = Signature.of(encoder.getOutputInfo());
+        Signature inputs = Signature.of(generator.getInputInfo());
+        int[] sources = bind(outputs, inputs);
+        StringBuilder bindings = new StringBuilder();
+        for (int i = 0; i < sources.length; i++) {
+            bindings.append(outputs.names[sources[i]]).append(" -> ").append(inputs.names[i]).append("; ");
+        }
+        LOG.fine("generator bindings: " + bindings);
+        return new ExecutionPlan(encoder, generator, inputs.names, sources);
+    }
+
+    // encoder output index for every generator input
+    static int[] bind(Signature outputs, Signature inputs) throws OrtException {
+        int[] sources = new int[inputs.names.length];
+        boolean[] used = new boolean[outputs.names.length];
+        Arrays.fill(sources, -1);
+        for (int i = 0; i < sources.length; i++) {
+            int source = outputs.indexOf(inputs.names[i]);
+            if (source >= 0) {
+                sources[i] = source;
+                used[source] = true;
+            }
+        }
+        int next = 0;
+        for (int i = 0; i < sources.length; i++) {
+            if (sources[i] >= 0) {
+                continue;
+            }
+            while (next < used.length && used[next]) {
+                next++;
+            }
+            if (next == used.length) {
+                throw new OrtException("No encoder output left for generator input " + inputs.names[i]);
+            }
+            sources[i] = next;
+            used[next] = true;
+        }
+        for (int i = 0; i < sources.length; i++) {
+            int source = sources[i];
+            if (outputs.types[source] != inputs.types[i]) {
+                throw new OrtException("Encoder output " + outputs.names[source] + " is " + outputs.types[source]
+                        + ", generator input " + inputs.names[i] + " expects " + inputs.types[i]);
+            }
+            if (!compatible(outputs.shapes[source], inputs.shapes[i])) {
+                throw new OrtException("Encoder output " + outputs.names[source] + " "
+                        + Arrays.toString(outputs.shapes[source]) + " does not fit generator input "
+                        + inputs.names[i] + " " + Arrays.toString(inputs.shapes[i]));
+            }
+        }
+        return sources;
+    }
+
+    // same rank and equal sizes where both are fixed, -1 is a dynamic dimension
+    static boolean compatible(long[] produced, long[] expected) {
+        if (produced.length != expected.length) {
+            return false;
+        }
+        for (int d = 0; d < produced.length; d++) {
+            if (produced[d] >= 0 && expected[d] >= 0 && produced[d] != expected[d]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public boolean isFor(OrtSession encoder, OrtSession generator) {
+        return this.encoder == encoder && this.generator == generator;
+    }
+
+    // the encoder inputs never change for a context, so this map is built once per context
+    public Map<String, OnnxTensor> encoderInputs(OnnxTensor image, OnnxTensor style) {
+        Map<String, OnnxTensor> inputs = new HashMap<>(4);
+        inputs.put(ENCODER_IMAGE, image);
+        inputs.put(ENCODER_STYLE, style);
+        return Collections.unmodifiableMap(inputs);
+    }
+
+    // sized for every generator input, refilled by bindGenerator on each run
+    public Map<String, OnnxTensor> newGeneratorInputs() {
+        return new HashMap<>(generatorInputs.length * 2);
+    }
+
+    // features are the encoder outputs in session order; only existing keys are replaced, so a
+    // reused map does not allocate
+    public void bindGenerator(Map<String, OnnxTensor> target, List<OnnxTensor> features) {
+        for (int i = 0; i < generatorInputs.length; i++) {
+            target.put(generatorInputs[i], features.get(sources[i]));
+        }
+    }
+
+    // straight from the encoder result, without collecting its outputs first
+    public void bindGenerator(Map<String, OnnxTensor> target, OrtSession.Result encoderOutputs) {
+        for (int i = 0; i < generatorInputs.length; i++) {
+            target.put(generatorInputs[i], (OnnxTensor) encoderOutputs.get(sources[i]));
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.inpainting;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession.SessionOptions;
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+
+// Session settings shared by every model that uses the profile. The SessionOptions are built
+// once per profile and reused, instead of once per session.
+public class ExecutionProfile implements AutoCloseable {
+
+    public final String name;
+    public final int intraOpThreads;
+    public final int interOpThreads;
+    public final OptLevel optLevel;
+    public final ExecutionMode executionMode;
+    public final boolean memoryPattern;
+    public final boolean cpuArena;
+
+    private SessionOptions options;
+    private SessionOptions preoptimizedOptions;
+
+    public ExecutionProfile(String name, int intraOpThreads, int interOpThreads, OptLevel optLevel,
+                            ExecutionMode executionMode, boolean memoryPattern, boolean cpuArena) {
+        this.name = name;
+        this.intraOpThreads = intraOpThreads;
+        this.interOpThreads = interOpThreads;
+        this.optLevel = optLevel;
+        this.executionMode = executionMode;
+        this.memoryPattern = memoryPattern;
+        this.cpuArena = cpuArena;
+    }
+
+    // one thread per core of the fastest cluster, so little cores do not stall each op
+    public static ExecutionProfile performance() {
+        return new ExecutionProfile("performance", CpuInfo.performanceCores(), 1,
+                OptLevel.ALL_OPT, ExecutionMode.SEQUENTIAL, true, true);
+    }
+
+    public static ExecutionProfile balanced() {
+        int threads = Math.max(1, Math.min(CpuInfo.cores(), CpuInfo.performanceCores() + 2));
+        return new ExecutionProfile("balanced", threads, 1,
+                OptLevel.ALL_OPT, ExecutionMode.SEQUENTIAL, true, true);
+    }
+
+    // independent branches run side by side, each with a small intra-op pool
+    public static ExecutionProfile parallel() {
+        int inter = 2;
+        int intra = Math.max(1, CpuInfo.performanceCores() / inter);
+        return new ExecutionProfile("parallel", intra, inter,
+                OptLevel.ALL_OPT, ExecutionMode.PARALLEL, true, true);
+    }
+
+    // fewer threads and no arena, for low-memory devices or background work
+    public static ExecutionProfile efficient() {
+        return new ExecutionProfile("efficient", Math.min(2, CpuInfo.cores()), 1,
+                OptLevel.EXTENDED_OPT, ExecutionMode.SEQUENTIAL, false, false);
+    }
+
+    public static ExecutionProfile[] presets() {
+        return new ExecutionProfile[] {performance(), balanced(), parallel(), efficient()};
+    }
+
+    public synchronized SessionOptions getOptions() throws OrtException {
+        if (options == null) {
+            options = newOptions(optLevel);
+        }
+        return options;
+    }
+
+    // for models that were already optimized offline with this profile
+    public synchronized SessionOptions getPreoptimizedOptions() throws OrtException {
+        if (preoptimizedOptions == null) {
+            preoptimizedOptions = newOptions(OptLevel.NO_OPT);
+        }
+        return preoptimizedOptions;
+    }
+
+    // a fresh, unshared options object; the caller owns and closes it
+    public SessionOptions newOptions(OptLevel level) throws OrtException {
+        SessionOptions opts = new SessionOptions();
+        opts.setIntraOpNumThreads(intraOpThreads);    //Sets the size of the CPU thread pool used for executing a single graph, if executing on a CPU.
+        opts.setInterOpNumThreads(interOpThreads);
+        opts.setOptimizationLevel(level);
+        opts.setExecutionMode(executionMode);
+        opts.setMemoryPatternOptimization(memoryPattern);
+        opts.setCPUArenaAllocator(cpuArena);
+        return opts;
+    }
+
+    // only valid once no session created from these options is in use any more
+    @Override
+    public synchronized void close() {
+        if (options != null) {
+            options.close();
+            options = null;
+        }
+        if (preoptimizedOptions != null) {
+            preoptimizedOptions.close();
+            preoptimizedOptions = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + "(intra=" + intraOpThreads + ", inter=" + interOpThreads + ", " + optLevel
+                + ", " + executionMode + ", memPattern=" + memoryPattern + ", arena=" + cpuArena + ")";
+    }
+}
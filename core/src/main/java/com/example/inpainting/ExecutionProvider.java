@@ -0,0 +1,44 @@
+package com.example.inpainting;
+
+import java.util.Collections;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtProvider;
+import ai.onnxruntime.OrtSession.SessionOptions;
+
+// Execution providers the app knows how to configure. CPU is always available and is the
+// numerical reference the others are checked against.
+public enum ExecutionProvider {
+
+    CPU(OrtProvider.CPU) {
+        @Override
+        public void configure(SessionOptions options, ExecutionProfile profile) {
+            // default provider, nothing to add
+        }
+    },
+
+    XNNPACK(OrtProvider.XNNPACK) {
+        @Override
+        public void configure(SessionOptions options, ExecutionProfile profile) throws OrtException {
+            // XNNPACK runs its own pool, so ORT's intra-op threads should not spin next to it
+            options.addConfigEntry("session.intra_op.allow_spinning", "0");
+            options.addXnnpack(Collections.singletonMap("intra_op_num_threads",
+                    String.valueOf(profile.intraOpThreads)));
+        }
+    },
+
+    NNAPI(OrtProvider.NNAPI) {
+        @Override
+        public void configure(SessionOptions options, ExecutionProfile profile) throws OrtException {
+            options.addNnapi();
+        }
+    };
+
+    public final OrtProvider ortProvider;
+
+    ExecutionProvider(OrtProvider ortProvider) {
+        this.ortProvider = ortProvider;
+    }
+
+    public abstract void configure(SessionOptions options, ExecutionProfile profile) throws OrtException;
+}
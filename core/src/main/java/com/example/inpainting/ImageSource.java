@@ -0,0 +1,10 @@
+package com.example.inpainting;
+
+// Pixels of the image being inpainted at a better quality than the working copy, e.g. decoded
+// from the original file. The model asks for each window at the resolution it feeds the network.
+public interface ImageSource {
+
+    // window in working-copy pixels (the whole image when null) at width x height, or null when
+    // the pixels are not available and the working copy has to be scaled instead
+    PixelImage sample(MaskRegion window, int width, int height);
+}
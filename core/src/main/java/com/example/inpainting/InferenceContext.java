@@ -0,0 +1,138 @@
+package com.example.inpainting;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+// Input tensors for one pipeline shape (batch x channels x height x width image input plus a
+// batch of style vectors of latentShape), allocated once. The tensors wrap direct native-order buffers without a
+// copy, so writing new values into the buffers updates the tensors in place for the next run.
+public class InferenceContext implements AutoCloseable {
+
+    public final int batch;
+    public final int channels;
+    public final int height;
+    public final int width;
+    // shape of one style vector, without the batch dimension
+    public final long[] latentShape;
+    public final int latentSize;
+
+    private final FloatBuffer inputBuffer;
+    private final FloatBuffer latentBuffer;
+    private final OnnxTensor inputTensor;
+    private final OnnxTensor latentTensor;
+
+    // session input maps of the plan last used with this context, rebuilt when the plan changes
+    private ExecutionPlan plan;
+    private Map<String, OnnxTensor> encoderInputs;
+    private Map<String, OnnxTensor> generatorInputs;
+    private Map<String, OnnxTensor> generatorView;
+
+    public InferenceContext(OrtEnvironment environment, int batch, int channels, int height, int width,
+                            long[] latentShape) throws OrtException {
+        this.batch = batch;
+        this.channels = channels;
+        this.height = height;
+        this.width = width;
+        this.latentShape = latentShape.clone();
+
+        long[] batchedShape = new long[latentShape.length + 1];
+        batchedShape[0] = batch;
+        int size = 1;
+        for (int i = 0; i < latentShape.length; i++) {
+            batchedShape[i + 1] = latentShape[i];
+            size *= (int) latentShape[i];
+        }
+        this.latentSize = size;
+
+        this.inputBuffer = allocate(batch * channels * height * width);
+        this.latentBuffer = allocate(batch * latentSize);
+        this.inputTensor = OnnxTensor.createTensor(environment, inputBuffer,
+                new long[]{batch, channels, height, width});
+        OnnxTensor latent;
+        try {
+            latent = OnnxTensor.createTensor(environment, latentBuffer, batchedShape);
+        } catch (OrtException e) {
+            inputTensor.close();
+            throw e;
+        }
+        this.latentTensor = latent;
+    }
+
+    public static String key(int batch, int channels, int height, int width, long[] latentShape) {
+        return batch + "x" + channels + "x" + height + "x" + width + "+" + Arrays.toString(latentShape);
+    }
+
+    public String key() {
+        return key(batch, channels, height, width, latentShape);
+    }
+
+    public FloatBuffer getInputBuffer() {
+        return inputBuffer;
+    }
+
+    public OnnxTensor getInputTensor() {
+        return inputTensor;
+    }
+
+    // copies one style vector into batch slot n
+    public void putLatent(int n, float[] latent) {
+        for (int i = 0; i < latentSize; i++) {
+            latentBuffer.put(n * latentSize + i, latent[i]);
+        }
+    }
+
+    public OnnxTensor getLatentTensor() {
+        return latentTensor;
+    }
+
+    public Map<String, OnnxTensor> getEncoderInputs(ExecutionPlan plan) {
+        use(plan);
+        return encoderInputs;
+    }
+
+    // read-only view of the generator inputs, valid until the next bind
+    public Map<String, OnnxTensor> bindGenerator(ExecutionPlan plan, List<OnnxTensor> features) {
+        use(plan);
+        plan.bindGenerator(generatorInputs, features);
+        return generatorView;
+    }
+
+    public Map<String, OnnxTensor> bindGenerator(ExecutionPlan plan, OrtSession.Result encoderOutputs) {
+        use(plan);
+        plan.bindGenerator(generatorInputs, encoderOutputs);
+        return generatorView;
+    }
+
+    private void use(ExecutionPlan plan) {
+        if (this.plan != plan) {
+            this.plan = plan;
+            encoderInputs = plan.encoderInputs(inputTensor, latentTensor);
+            generatorInputs = plan.newGeneratorInputs();
+            generatorView = Collections.unmodifiableMap(generatorInputs);
+        }
+    }
+
+    public long getNativeBytes() {
+        return 4L * (inputBuffer.capacity() + latentBuffer.capacity());
+    }
+
+    @Override
+    public void close() {
+        inputTensor.close();
+        latentTensor.close();
+    }
+
+    private static FloatBuffer allocate(int floats) {
+        return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.inpainting;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+
+// Keeps idle InferenceContexts per shape so repeated inferences reuse the same native tensors.
+// A context is used by one run at a time; concurrent tiles each acquire their own.
+public class InferenceContextPool implements AutoCloseable {
+
+    private final OrtEnvironment environment;
+    private final int maxIdlePerShape;
+    private final Map<String, ArrayDeque<InferenceContext>> idle = new HashMap<>();
+    private boolean closed = false;
+
+    private long allocations = 0;
+    private long nativeBytes = 0;
+
+    public InferenceContextPool(OrtEnvironment environment, int maxIdlePerShape) {
+        this.environment = environment;
+        this.maxIdlePerShape = maxIdlePerShape;
+    }
+
+    public InferenceContext acquire(int batch, int channels, int height, int width, long[] latentShape)
+            throws OrtException {
+        String key = InferenceContext.key(batch, channels, height, width, latentShape);
+        synchronized (this) {
+            ArrayDeque<InferenceContext> queue = idle.get(key);
+            if (queue != null && !queue.isEmpty()) {
+                return queue.pop();
+            }
+        }
+        InferenceContext context = new InferenceContext(environment, batch, channels, height, width, latentShape);
+        synchronized (this) {
+            allocations++;
+            nativeBytes += context.getNativeBytes();
+        }
+        return context;
+    }
+
+    public void release(InferenceContext context) {
+        if (context == null) {
+            return;
+        }
+        synchronized (this) {
+            ArrayDeque<InferenceContext> queue = idle.get(context.key());
+            if (closed) {
+                queue = null;
+            } else if (queue == null) {
+                queue = new ArrayDeque<>();
+                idle.put(context.key(), queue);
+            }
+            if (queue != null && queue.size() < maxIdlePerShape) {
+                queue.push(context);
+                return;
+            }
+            nativeBytes -= context.getNativeBytes();
+        }
+        context.close();
+    }
+
+    // contexts created so far, reused contexts are not counted
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    // native bytes of every open context, idle or in use
+    public synchronized long getNativeBytes() {
+        return nativeBytes;
+    }
+
+    public synchronized long getIdleNativeBytes() {
+        long bytes = 0;
+        for (ArrayDeque<InferenceContext> queue : idle.values()) {
+            for (InferenceContext context : queue) {
+                bytes += context.getNativeBytes();
+            }
+        }
+        return bytes;
+    }
+
+    // closes every idle context, keeps allocating on demand
+    public synchronized void trim() {
+        for (ArrayDeque<InferenceContext> queue : idle.values()) {
+            for (InferenceContext context : queue) {
+                nativeBytes -= context.getNativeBytes();
+                context.close();
+            }
+        }
+        idle.clear();
+    }
+
+    // closes every idle context; contexts still in use are closed when they are released
+    @Override
+    public synchronized void close() {
+        closed = true;
+        trim();
+    }
+}
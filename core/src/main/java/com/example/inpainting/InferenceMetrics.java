@@ -0,0 +1,188 @@
+package com.example.inpainting;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+// Per-stage latency of the inpainting pipeline plus allocation counters and native memory gauges.
+// Each stage keeps its last WINDOW samples, percentiles are computed over that window.
+// Thread-safe; concurrent tiles record into the same instance.
+public class InferenceMetrics {
+
+    public static final String BINARIZE = "mask_binarize";
+    public static final String RESIZE = "resize";
+    public static final String PREPROCESS = "preprocess";
+    public static final String MAPPING = "mapping";
+    public static final String ENCODER = "encoder";
+    public static final String GENERATOR = "generator";
+    public static final String COMPOSITE = "composite";
+    public static final String UPSCALE = "upscale";
+    public static final String SUPER_RESOLUTION = "super_resolution";
+
+    public static final String[] STAGES = {
+            BINARIZE, RESIZE, PREPROCESS, MAPPING, ENCODER, GENERATOR, COMPOSITE, UPSCALE, SUPER_RESOLUTION
+    };
+
+    private static final int WINDOW = 256;
+
+    public static class StageStats {
+        public final String stage;
+        public final long count;
+        public final long meanNanos;
+        public final long p50Nanos;
+        public final long p95Nanos;
+        public final long p99Nanos;
+        public final long maxNanos;
+
+        StageStats(String stage, long count, long meanNanos, long p50Nanos, long p95Nanos, long p99Nanos,
+                   long maxNanos) {
+            this.stage = stage;
+            this.count = count;
+            this.meanNanos = meanNanos;
+            this.p50Nanos = p50Nanos;
+            this.p95Nanos = p95Nanos;
+            this.p99Nanos = p99Nanos;
+            this.maxNanos = maxNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%s: p50 %.1f ms, p95 %.1f ms, p99 %.1f ms (n=%d)",
+                    stage, p50Nanos / 1e6, p95Nanos / 1e6, p99Nanos / 1e6, count);
+        }
+    }
+
+    private static class Samples {
+        final long[] ring = new long[WINDOW];
+        long count;
+        long total;
+        long max;
+
+        void add(long nanos) {
+            ring[(int) (count % WINDOW)] = nanos;
+            count++;
+            total += nanos;
+            if (nanos > max) {
+                max = nanos;
+            }
+        }
+    }
+
+    private final Map<String, Samples> stages = new LinkedHashMap<>();
+    private final Map<String, Long> counters = new LinkedHashMap<>();
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+
+    public InferenceMetrics() {
+        for (String stage : STAGES) {
+            stages.put(stage, new Samples());
+        }
+    }
+
+    public synchronized void record(String stage, long nanos) {
+        Samples samples = stages.get(stage);
+        if (samples == null) {
+            samples = new Samples();
+            stages.put(stage, samples);
+        }
+        samples.add(nanos);
+    }
+
+    // records the time since startNanos (a System.nanoTime() value) and returns the current time
+    public long since(String stage, long startNanos) {
+        long now = System.nanoTime();
+        record(stage, now - startNanos);
+        return now;
+    }
+
+    public synchronized void count(String counter, long delta) {
+        Long value = counters.get(counter);
+        counters.put(counter, (value == null) ? delta : value + delta);
+    }
+
+    public synchronized long getCount(String counter) {
+        Long value = counters.get(counter);
+        return (value == null) ? 0 : value;
+    }
+
+    // a value read at snapshot time, e.g. the bytes currently held by a pool
+    public synchronized void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public synchronized StageStats getStageStats(String stage) {
+        Samples samples = stages.get(stage);
+        if (samples == null || samples.count == 0) {
+            return new StageStats(stage, 0, 0, 0, 0, 0, 0);
+        }
+        int n = (int) Math.min(samples.count, WINDOW);
+        long[] sorted = Arrays.copyOf(samples.ring, n);
+        Arrays.sort(sorted);
+        return new StageStats(stage, samples.count, samples.total / samples.count,
+                percentile(sorted, 50), percentile(sorted, 95), percentile(sorted, 99), samples.max);
+    }
+
+    public synchronized Map<String, StageStats> getStageStats() {
+        Map<String, StageStats> stats = new LinkedHashMap<>();
+        for (String stage : stages.keySet()) {
+            stats.put(stage, getStageStats(stage));
+        }
+        return stats;
+    }
+
+    public synchronized Map<String, Long> getCounters() {
+        Map<String, Long> values = new LinkedHashMap<>(counters);
+        for (Map.Entry<String, LongSupplier> gauge : gauges.entrySet()) {
+            values.put(gauge.getKey(), gauge.getValue().getAsLong());
+        }
+        return values;
+    }
+
+    public synchronized void reset() {
+        for (String stage : stages.keySet()) {
+            stages.put(stage, new Samples());
+        }
+        counters.clear();
+    }
+
+    // nearest-rank percentile of an ascending array
+    static long percentile(long[] sorted, int p) {
+        int rank = (int) Math.ceil(p / 100.0 * sorted.length);
+        return sorted[Math.max(0, Math.min(sorted.length - 1, rank - 1))];
+    }
+
+    // {"stages": {"<stage>": {"count": n, "mean_ms": .., "p50_ms": .., ...}}, "counters": {"<name>": n}}
+    public synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"stages\":{");
+        boolean first = true;
+        for (StageStats stats : getStageStats().values()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(stats.stage).append("\":{")
+                    .append("\"count\":").append(stats.count)
+                    .append(",\"mean_ms\":").append(millis(stats.meanNanos))
+                    .append(",\"p50_ms\":").append(millis(stats.p50Nanos))
+                    .append(",\"p95_ms\":").append(millis(stats.p95Nanos))
+                    .append(",\"p99_ms\":").append(millis(stats.p99Nanos))
+                    .append(",\"max_ms\":").append(millis(stats.maxNanos))
+                    .append('}');
+        }
+        json.append("},\"counters\":{");
+        first = true;
+        for (Map.Entry<String, Long> counter : getCounters().entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(counter.getKey()).append("\":").append(counter.getValue());
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.US, "%.3f", nanos / 1e6);
+    }
+}
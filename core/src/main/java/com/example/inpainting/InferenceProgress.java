@@ -0,0 +1,12 @@
+package com.example.inpainting;
+
+import java.util.concurrent.CancellationException;
+
+// Stage boundaries of one inference. stage() is also the cancellation point: once the request
+// has been cancelled the next boundary throws and the remaining stages are skipped.
+public interface InferenceProgress {
+
+    InferenceProgress NONE = stage -> { };
+
+    void stage(String stage) throws CancellationException;
+}
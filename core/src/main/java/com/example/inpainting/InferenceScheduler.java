@@ -0,0 +1,187 @@
+package com.example.inpainting;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+// Runs inference requests one at a time on a dedicated thread, so repeated requests never compete
+// for the cores. Pending requests are coalesced by key (a newer request replaces the pending one
+// with the same key) and the queue is bounded (the oldest pending request is dropped when full).
+// Dropped and cancelled requests complete with a CancellationException.
+public class InferenceScheduler implements AutoCloseable {
+
+    public interface Job<T> {
+        T run(InferenceProgress progress) throws Exception;
+    }
+
+    public interface StageListener {
+        // elapsedNanos is measured from the moment the request was submitted
+        void onStage(String stage, long elapsedNanos);
+    }
+
+    public static final String QUEUED = "queued";
+    public static final String STARTED = "started";
+    public static final String DONE = "done";
+
+    private final ExecutorService worker;
+    private final Executor callbackExecutor;
+    private final int maxPending;
+
+    private final Map<String, Request<?>> pending = new LinkedHashMap<>();
+    private Request<?> running;
+    private boolean draining = false;
+    private boolean closed = false;
+
+    // stage callbacks are delivered on callbackExecutor, usually the main thread
+    public InferenceScheduler(Executor callbackExecutor, int maxPending) {
+        this.callbackExecutor = callbackExecutor;
+        this.maxPending = Math.max(1, maxPending);
+        this.worker = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inference");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public <T> CompletableFuture<T> submit(String key, Job<T> job, StageListener listener) {
+        Request<T> request = new Request<>(key, job, listener);
+        List<Request<?>> dropped = new ArrayList<>(2);
+        request.report(QUEUED);
+        synchronized (this) {
+            if (closed) {
+                request.completeExceptionally(new RejectedExecutionException("Scheduler is closed"));
+                return request;
+            }
+            Request<?> previous = pending.remove(key);
+            if (previous != null) {
+                dropped.add(previous);
+            }
+            if (pending.size() >= maxPending) {
+                Iterator<Request<?>> oldest = pending.values().iterator();
+                dropped.add(oldest.next());
+                oldest.remove();
+            }
+            pending.put(key, request);
+            if (!draining) {
+                draining = true;
+                worker.execute(this::drain);
+            }
+        }
+        for (Request<?> superseded : dropped) {
+            superseded.cancel(false);
+        }
+        return request;
+    }
+
+    // cancels every pending request and the running one; the running job stops at its next stage
+    public void cancelAll() {
+        List<Request<?>> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<>(pending.values());
+            pending.clear();
+            if (running != null) {
+                cancelled.add(running);
+            }
+        }
+        for (Request<?> request : cancelled) {
+            request.cancel(false);
+        }
+    }
+
+    public synchronized boolean isIdle() {
+        return running == null && pending.isEmpty();
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+        }
+        cancelAll();
+        worker.shutdown();
+    }
+
+    private void drain() {
+        while (true) {
+            Request<?> request;
+            synchronized (this) {
+                Iterator<Request<?>> next = pending.values().iterator();
+                if (!next.hasNext()) {
+                    running = null;
+                    draining = false;
+                    return;
+                }
+                request = next.next();
+                next.remove();
+                running = request;
+            }
+            request.execute();
+        }
+    }
+
+    private synchronized void removePending(Request<?> request) {
+        if (pending.get(request.key) == request) {
+            pending.remove(request.key);
+        }
+    }
+
+    private class Request<T> extends CompletableFuture<T> implements InferenceProgress {
+        final String key;
+        final Job<T> job;
+        final StageListener listener;
+        final long submitTime = System.nanoTime();
+
+        Request(String key, Job<T> job, StageListener listener) {
+            this.key = key;
+            this.job = job;
+            this.listener = listener;
+        }
+
+        void execute() {
+            if (isDone()) {
+                return;
+            }
+            try {
+                report(STARTED);
+                T result = job.run(this);
+                report(DONE);
+                complete(result);
+            } catch (Throwable e) {
+                completeExceptionally(e);
+            }
+        }
+
+        @Override
+        public void stage(String stage) {
+            if (isCancelled()) {
+                throw new CancellationException("Request " + key + " was cancelled");
+            }
+            report(stage);
+        }
+
+        void report(String stage) {
+            if (listener == null) {
+                return;
+            }
+            long elapsed = System.nanoTime() - submitTime;
+            callbackExecutor.execute(() -> listener.onStage(stage, elapsed));
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                removePending(this);
+            }
+            return cancelled;
+        }
+    }
+}
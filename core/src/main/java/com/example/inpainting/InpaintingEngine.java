@@ -0,0 +1,24 @@
+package com.example.inpainting;
+
+import java.util.List;
+
+import ai.onnxruntime.OrtException;
+
+// One network pipeline of the model. The model prepares every tile at getInputWidth() x
+// getInputHeight() with the shared mask and resize kernels, the engine fills its own input layout
+// and runs its sessions, and the shared compositor pastes the output back into the image.
+public interface InpaintingEngine {
+
+    String getName();
+
+    int getInputWidth();
+
+    int getInputHeight();
+
+    // models opened by run, in the order they are used
+    String[] getModels();
+
+    // generated pixels of every tile as a 3 x H x W tensor in [-1, 1]; variation marks a re-roll
+    // of the previous input with another style
+    float[][] run(List<InpaintingTile> tiles, boolean variation) throws OrtException;
+}
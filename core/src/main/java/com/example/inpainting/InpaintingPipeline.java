@@ -0,0 +1,1108 @@
+package com.example.inpainting;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.FloatBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.NodeInfo;
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.TensorInfo;
+
+// The inpainting pipeline on plain pixel buffers: ARGB int[] images, packed masks and model files
+// on disk. Nothing here depends on the Android SDK, so the same pipeline runs in the app (through
+// the InpaintingModel adapter) and on a desktop or server JVM with the CPU ONNX Runtime.
+public class InpaintingPipeline {
+    private int imageHeight = 256;
+    private int imageWidth = 256;
+
+    private OrtEnvironment environment;
+
+    // one options object per profile, shared by every session created with it
+    private volatile ExecutionProfile defaultProfile = ExecutionProfile.performance();
+    private final Map<String, ExecutionProfile> modelProfiles = new ConcurrentHashMap<>();
+
+    // accelerated providers are probed against the CPU reference once per model and profile, in
+    // this order; the outcome is kept in memory and in selectionCache for the next launches
+    private volatile List<ExecutionProvider> providerPriority = Collections.singletonList(ExecutionProvider.CPU);
+    private final Map<String, ProviderSelectionCache.Entry> selectedProviders = new ConcurrentHashMap<>();
+
+    // state of the last preprocess/miganPreprocess call, read back by postprocess/miganPostprocess
+    private InpaintingTile frameTile;
+    private InpaintingTile miganTile;
+
+    public long time_span;
+
+    private int random_seed = 2023;
+
+    public static final String MAPPING = "mapping";
+    public static final String ENCODER = "encoder";
+    public static final String GENERATOR = "generator";
+    public static final String ESRGAN = "esrgan";
+    public static final String MIGAN = "migan";
+
+    public static final String STAGE_PREPROCESS = "preprocess";
+    public static final String STAGE_INFERENCE = "inference";
+    public static final String STAGE_POSTPROCESS = "postprocess";
+
+    private static final Logger LOG = Logger.getLogger(InpaintingPipeline.class.getName());
+
+    // sessions are opened when a pipeline first needs them and may be evicted when idle
+    private final SessionManager sessions;
+    private final SessionManager.ModelLocator locator;
+    private final OptimizedModelCache optimizedCache;
+    private final ProviderSelectionCache selectionCache;
+
+    // crop-and-paste mode: only a context window around the mask is inpainted
+    private boolean regionMode = false;
+    private float regionContextScale = 2.0f;
+
+    // tiles of a multi-region mask are batched when the models allow it, otherwise run in parallel
+    private int maxBatchSize = 4;
+    private int maxParallelTiles = 2;
+    private Boolean batchDynamic;
+
+    // encoder output -> generator input bindings of the loaded sessions
+    private ExecutionPlan plan;
+    private ExecutorService tileExecutor;
+
+    // direct input buffers are reused across inferences instead of being reallocated on the heap
+    private final TensorBufferPool bufferPool = new TensorBufferPool();
+    private final Map<OnnxTensor, FloatBuffer> pooledTensors = new IdentityHashMap<>();
+
+    // fixed-shape input tensors of the generator pipeline, one set per resolution and batch size
+    private final InferenceContextPool contexts;
+
+    // pre/post-processing pixel loops are split into row stripes over the performance cores
+    private final ParallelPixels pixelPool = new ParallelPixels(CpuInfo.performanceCores());
+
+    // enlarged results go through ESRGAN in overlapping 128 x 128 tiles around the holes
+    private final TiledSuperResolution superResolution = new TiledSuperResolution(pixelPool, 128, 16);
+    private volatile boolean superResolutionMode = true;
+    private static final int SR_MARGIN = 2;
+
+    private final InferenceMetrics metrics = new InferenceMetrics();
+
+    // mapping network outputs by seed, so the interactive path skips the mapping pass
+    private final LatentCache latents;
+
+    // both pipelines share tile preparation and compositing; the policy picks one per inference
+    private final InpaintingEngine generatorEngine = new GeneratorEngine();
+    private final InpaintingEngine miganEngine = new MiganEngine();
+    private final EnginePolicy enginePolicy = new EnginePolicy(GENERATOR, MIGAN);
+    private volatile String lastEngine;
+
+    // incremental mode keeps the encoder outputs of recent inputs for style re-rolls
+    private volatile boolean incrementalMode = false;
+    private final EncoderFeatureCache featureCache = new EncoderFeatureCache(64L * 1024 * 1024);
+    private volatile EncoderFeatureCache.Dependence[] encoderDependence;
+    private static final EncoderFeatureCache.Dependence[] UNCACHEABLE = new EncoderFeatureCache.Dependence[0];
+
+    // <name>.onnx files of modelDir, optimized graphs are cached next to them
+    public InpaintingPipeline(File modelDir) throws OrtException, IOException {
+        this(name -> {
+            File modelFile = new File(modelDir, name + ".onnx");
+            if (!modelFile.isFile()) {
+                throw new FileNotFoundException(modelFile.toString());
+            }
+            return modelFile;
+        }, new File(modelDir, "optimized"));
+    }
+
+    // locator maps the model names (MAPPING, ENCODER, ...) to their files
+    public InpaintingPipeline(SessionManager.ModelLocator locator, File cacheDir) throws OrtException, IOException {
+        // the ONNX Runtime environment is shared by every session of the process
+        this.environment = OrtEnvironment.getEnvironment();
+        this.contexts = new InferenceContextPool(environment, maxParallelTiles);
+        this.locator = locator;
+        this.optimizedCache = new OptimizedModelCache(cacheDir);
+        this.selectionCache = new ProviderSelectionCache(cacheDir);
+        this.sessions = new SessionManager(locator, this::make_session);
+        this.latents = new LatentCache(this::map_latent, 512, 4, random_seed);
+
+        metrics.gauge("direct_buffer_allocations", bufferPool::getAllocations);
+        metrics.gauge("context_allocations", contexts::getAllocations);
+        metrics.gauge("native_tensor_bytes", () -> contexts.getNativeBytes() + bufferPool.getPooledBytes());
+        metrics.gauge("session_bytes", sessions::getOpenBytes);
+    }
+
+    public InferenceMetrics getMetrics() {
+        return metrics;
+    }
+
+    // thresholds and a forced engine for the engine selection
+    public EnginePolicy getEnginePolicy() {
+        return enginePolicy;
+    }
+
+    public InpaintingEngine getEngine(String name) {
+        if (GENERATOR.equals(name)) {
+            return generatorEngine;
+        }
+        if (MIGAN.equals(name)) {
+            return miganEngine;
+        }
+        throw new IllegalArgumentException("Unknown engine " + name);
+    }
+
+    // engine of the last inference, null before the first one
+    public String getLastEngine() {
+        return lastEngine;
+    }
+
+    // sessions that are already open keep their options until they are evicted
+    public void setExecutionProfile(ExecutionProfile profile) {
+        this.defaultProfile = profile;
+        sessions.evictIdle();
+    }
+
+    public void setExecutionProfile(String model, ExecutionProfile profile) {
+        if (profile == null) {
+            modelProfiles.remove(model);
+        } else {
+            modelProfiles.put(model, profile);
+        }
+        sessions.evict(model);
+    }
+
+    public ExecutionProfile getExecutionProfile(String model) {
+        ExecutionProfile profile = modelProfiles.get(model);
+        return (profile != null) ? profile : defaultProfile;
+    }
+
+    // times the model under each candidate profile, fastest first
+    public List<ProfileBenchmark.Result> benchmarkProfiles(String model, ExecutionProfile[] candidates, int runs)
+            throws OrtException, IOException {
+        // each candidate opens its own session, the idle pipeline one would only double the memory
+        sessions.evict(model);
+        return ProfileBenchmark.run(environment, locator.locate(model), candidates, runs);
+    }
+
+    // re-runs keep the style of the last inference until unpinStyle
+    public long pinStyle() {
+        return latents.pinLast();
+    }
+
+    public void pinStyle(long seed) {
+        latents.pin(seed);
+    }
+
+    public void unpinStyle() {
+        latents.unpin();
+    }
+
+    public Long getPinnedStyle() {
+        return latents.getPinnedSeed();
+    }
+
+    // region tiles then run one by one so that each of them can hit the cache
+    public void setIncrementalMode(boolean incrementalMode) {
+        this.incrementalMode = incrementalMode;
+        if (!incrementalMode) {
+            featureCache.clear();
+        }
+    }
+
+    public void setSessionMemoryBudget(long bytes) {
+        sessions.setMemoryBudget(bytes);
+    }
+
+    // closes every idle session and drops the pooled tensors and caches, the next inference
+    // reopens what it needs
+    public void trimMemory() {
+        sessions.evictIdle();
+        contexts.trim();
+        bufferPool.clear();
+        latents.clear();
+        featureCache.clear();
+    }
+
+    // closes the least recently used idle sessions until half of their memory is released
+    public void trimSessions() {
+        sessions.evictTo(sessions.getOpenBytes() / 2);
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (tileExecutor != null) {
+                tileExecutor.shutdownNow();
+                tileExecutor = null;
+            }
+        }
+        latents.close();
+        sessions.close();
+        contexts.close();
+        bufferPool.clear();
+        pixelPool.close();
+    }
+
+    public void setProviderPriority(ExecutionProvider... priority) {
+        this.providerPriority = Collections.unmodifiableList(new ArrayList<>(Arrays.asList(priority)));
+        selectedProviders.clear();
+        sessions.evictIdle();
+    }
+
+    // provider chosen for the model under its current profile, or null if its session has not
+    // been opened yet
+    public ExecutionProvider getSelectedProvider(String model) {
+        ProviderSelectionCache.Entry selection = selectedProviders.get(selectionKey(model));
+        return (selection != null) ? selection.provider : null;
+    }
+
+    public List<String> getProviderReport(String model) {
+        ProviderSelectionCache.Entry selection = selectedProviders.get(selectionKey(model));
+        return (selection != null) ? selection.report : Collections.<String>emptyList();
+    }
+
+    private String selectionKey(String model) {
+        return model + "." + getExecutionProfile(model).name;
+    }
+
+    private OrtSession make_session(String name, File modelFile) throws OrtException {
+        ExecutionProfile profile = getExecutionProfile(name);
+        List<ExecutionProvider> priority = providerPriority;
+        if (priority.isEmpty() || priority.get(0) == ExecutionProvider.CPU) {
+            // CPU sessions load the cached optimized graph when there is one
+            return optimizedCache.createSession(environment, name, modelFile, profile);
+        }
+
+        String key = name + "." + profile.name;
+        ProviderSelectionCache.Entry selection = selectedProviders.get(key);
+        if (selection == null) {
+            selection = selectionCache.load(name, profile, modelFile, priority);
+        }
+        if (selection != null) {
+            try {
+                OrtSession session = selection.provider == ExecutionProvider.CPU
+                        ? optimizedCache.createSession(environment, name, modelFile, profile)
+                        // optimized graphs are provider specific, accelerated sessions load the source model
+                        : OrtProviderBackend.createSession(environment, modelFile, profile, selection.provider);
+                selectedProviders.put(key, selection);
+                return session;
+            } catch (OrtException e) {
+                // e.g. a driver update since the selection was saved, select again
+                LOG.log(Level.WARNING, selection.provider + " no longer opens " + name + ", probing again", e);
+                selectedProviders.remove(key);
+                selectionCache.remove(name, profile);
+            }
+        }
+
+        ProviderSelector.Selection<OrtProviderBackend.SessionCandidate> selected;
+        try {
+            selected = new ProviderSelector<OrtProviderBackend.SessionCandidate>()
+                    .select(new OrtProviderBackend(environment, name, modelFile, profile, optimizedCache), priority);
+        } catch (OrtException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new OrtException("Provider selection failed for " + name + ": " + e.getMessage());
+        }
+        selectedProviders.put(key, new ProviderSelectionCache.Entry(selected.provider, selected.report));
+        selectionCache.save(name, profile, priority, selected.provider, selected.report);
+        // the CPU reference already went through the optimized graph cache, so any winner is kept
+        return selected.candidate.detach();
+    }
+
+    // Startup stage: opens each session (optimizing and caching its graph on first launch) and runs
+    // one dummy inference so kernels and arenas are initialized before the user's first tap.
+    public void warmUp(String... models) throws OrtException, IOException {
+        for (String name : models) {
+            List<String> acquired = new ArrayList<>(1);
+            try {
+                OrtSession session = acquireSession(name, acquired);
+                Map<String, OnnxTensor> inputs = DummyInputs.create(environment, session);
+                try {
+                    session.run(inputs).close();
+                } finally {
+                    DummyInputs.close(inputs);
+                }
+            } finally {
+                for (String acquiredName : acquired) {
+                    sessions.release(acquiredName);
+                }
+            }
+        }
+    }
+
+    public void warmUp() throws OrtException, IOException {
+        warmUp(generatorEngine.getModels());
+        latents.prefetch();
+        String forced = enginePolicy.getForcedEngine();
+        if (forced == null || MIGAN.equals(forced)) {
+            warmUp(miganEngine.getModels());
+        }
+    }
+
+    // takes the source, scales the image to the model resolution and samples the mask of window
+    // (the whole image when null) at the model and, when the source can, the native resolution.
+    // The model input is taken from detail when it has the window, e.g. from the original photo.
+    private InpaintingTile prepareTile(MaskRegion window, PixelImage img, ImageSource detail, MaskSource mask,
+                                       int width, int height) {
+        long stime = System.nanoTime();
+        PixelImage gt = detail != null ? detail.sample(window, width, height) : null;
+        if (gt == null) {
+            gt = img.scale(width, height, pixelPool);
+        }
+        metrics.since(InferenceMetrics.RESIZE, stime);
+        BinaryMask scaledMask = mask.sample(window, width, height);
+        BinaryMask nativeMask = mask.sampleNative(window);
+        return new InpaintingTile(window, img, gt, scaledMask, nativeMask);
+    }
+
+    // a drawn mask image, scaled and binarized for each window like before
+    private MaskSource pixelMask(PixelImage mask) {
+        return new MaskSource() {
+            @Override
+            public int getWidth() {
+                return mask.width;
+            }
+
+            @Override
+            public int getHeight() {
+                return mask.height;
+            }
+
+            @Override
+            public BinaryMask sample(MaskRegion window, int width, int height) {
+                long stime = System.nanoTime();
+                PixelImage scaled = mask.crop(window).scale(width, height, pixelPool);
+                stime = metrics.since(InferenceMetrics.RESIZE, stime);
+                // binarize works in place, the scaled pixels may still be the mask itself
+                int[] pixels = scaled == mask ? mask.getPixels().clone() : scaled.getPixels();
+                BinaryMask binary = MaskEngine.binarize(pixels, width, height, pixelPool);
+                metrics.since(InferenceMetrics.BINARIZE, stime);
+                return binary;
+            }
+
+            @Override
+            public BinaryMask sampleNative(MaskRegion window) {
+                return null;
+            }
+        };
+    }
+
+    // vector strokes are rasterized straight at each resolution, recorded as the binarize stage
+    private MaskSource strokeMask(StrokeMask strokes) {
+        return new MaskSource() {
+            @Override
+            public int getWidth() {
+                return strokes.width;
+            }
+
+            @Override
+            public int getHeight() {
+                return strokes.height;
+            }
+
+            @Override
+            public BinaryMask sample(MaskRegion window, int width, int height) {
+                long stime = System.nanoTime();
+                BinaryMask binary = strokes.sample(window, width, height);
+                metrics.since(InferenceMetrics.BINARIZE, stime);
+                return binary;
+            }
+
+            @Override
+            public BinaryMask sampleNative(MaskRegion window) {
+                long stime = System.nanoTime();
+                BinaryMask binary = strokes.sampleNative(window);
+                metrics.since(InferenceMetrics.BINARIZE, stime);
+                return binary;
+            }
+        };
+    }
+
+    // writes the masked RGB planes and the mask plane of one tile starting at offset
+    private void fillInput(InpaintingTile tile, FloatBuffer imgData, int offset) {
+        fillInput(tile, imgData, offset, TensorPacker.LAYOUT_RGB_MASK);
+    }
+
+    private void fillInput(InpaintingTile tile, FloatBuffer imgData, int offset, int layout) {
+        long stime = System.nanoTime();
+        int width = tile.imageWidth;
+        int height = tile.imageHeight;
+        int stride = height * width;
+        int[] bmpData = tile.gt_img.getPixels();
+
+        // row first
+        pixelPool.forRows(width, height, (stripe, fromRow, toRow) ->
+                TensorPacker.pack(bmpData, tile.scaled_mask, imgData, offset, layout, stride,
+                        fromRow * width, toRow * width));
+        metrics.since(InferenceMetrics.PREPROCESS, stime);
+    }
+
+    public OnnxTensor preprocess(PixelImage img, PixelImage mask, int channels) throws OrtException {
+        this.frameTile = prepareTile(null, img, null, pixelMask(mask), imageWidth, imageHeight);
+        FloatBuffer imgData = bufferPool.acquire(
+                        channels
+                        * imageWidth
+                        * imageHeight
+        );
+        fillInput(frameTile, imgData, 0);
+
+        long[] target_shape = new long[]{1, channels, imageHeight, imageWidth};
+        // input tensor, the direct buffer is wrapped without another copy
+        OnnxTensor inputTensor = createPooledTensor(imgData, target_shape);
+
+        return inputTensor;
+    }
+
+    public OnnxTensor miganPreprocess(PixelImage img, PixelImage mask, int channels) throws OrtException {
+        this.miganTile = prepareTile(null, img, null, pixelMask(mask), 512, 512);
+        return miganTensor(miganTile);
+    }
+
+    private OnnxTensor miganTensor(InpaintingTile tile) throws OrtException {
+        int width = tile.imageWidth;
+        int height = tile.imageHeight;
+        FloatBuffer imgData = bufferPool.acquire(4 * width * height);
+        fillInput(tile, imgData, 0, TensorPacker.LAYOUT_MASK_RGB);
+
+        long[] target_shape = new long[]{1, 4, height, width};
+        // input tensor
+        return createPooledTensor(imgData, target_shape);
+    }
+
+    private OnnxTensor createPooledTensor(FloatBuffer buffer, long[] shape) throws OrtException {
+        buffer.rewind();
+        OnnxTensor tensor;
+        try {
+            tensor = OnnxTensor.createTensor(environment, buffer, shape);
+        } catch (OrtException e) {
+            bufferPool.release(buffer);
+            throw e;
+        }
+        synchronized (pooledTensors) {
+            pooledTensors.put(tensor, buffer);
+        }
+        metrics.count("input_tensors", 1);
+        return tensor;
+    }
+
+    // closes a tensor and hands its backing buffer back to the pool
+    public void releaseTensor(OnnxTensor tensor) {
+        if (tensor == null) {
+            return;
+        }
+        FloatBuffer buffer;
+        synchronized (pooledTensors) {
+            buffer = pooledTensors.remove(tensor);
+        }
+        tensor.close();
+        bufferPool.release(buffer);
+    }
+
+    // img resampled to outWidth x outHeight through ESRGAN tiles
+    public PixelImage superResolution(PixelImage img, int outWidth, int outHeight) throws OrtException {
+        int[] out = new int[outWidth * outHeight];
+        superResolution(img.getPixels(), img.width, img.height, new MaskRegion(0, 0, img.width, img.height),
+                out, outWidth, outHeight);
+        return new PixelImage(out, outWidth, outHeight);
+    }
+
+    // only the pixels of region are written to out, one tile in flight at a time
+    private void superResolution(int[] pixels, int width, int height, MaskRegion region,
+                                 int[] out, int outWidth, int outHeight) throws OrtException {
+        List<String> acquired = new ArrayList<>(1);
+        try {
+            OrtSession session = acquireSession(ESRGAN, acquired);
+            superResolution.upscale((argb, w, h) -> upscaleTile(session, argb, w, h),
+                    pixels, width, height, region, out, outWidth, outHeight);
+        } catch (IOException e) {
+            throw new OrtException("Unable to load " + ESRGAN + ": " + e.getMessage());
+        } finally {
+            for (String name : acquired) {
+                sessions.release(name);
+            }
+        }
+    }
+
+    // ESRGAN pass of one tile, RGB in [0, 1] both ways
+    private float[] upscaleTile(OrtSession session, int[] argb, int width, int height) throws OrtException {
+        int stride = width * height;
+        FloatBuffer imgData = bufferPool.acquire(3 * stride);
+        for (int idx = 0; idx < stride; idx++) {
+            int pixelValue = argb[idx];
+            imgData.put(idx, (pixelValue >> 16 & 0xFF) / 255.0f);   //R
+            imgData.put(idx + stride, (pixelValue >> 8 & 0xFF) / 255.0f);   //G
+            imgData.put(idx + stride * 2, (pixelValue & 0xFF) / 255.0f);   //B
+        }
+        OnnxTensor tensor = createPooledTensor(imgData, new long[]{1, 3, height, width});
+        try (OrtSession.Result sr_out = session.run(Collections.singletonMap("input", tensor))) {
+            return ((OnnxTensor) sr_out.get(0)).getFloatBuffer().array();
+        } finally {
+            releaseTensor(tensor);
+        }
+    }
+
+    // Fake pixels of the tile at its original resolution, super-resolved around the holes only;
+    // the other pixels stay 0 as the composite never reads them. Null when the result is not
+    // enlarged, super-resolution is off or it fails, for the bilinear upscale instead.
+    private int[] superResolve(InpaintingTile tile, int[] compData) {
+        int width = tile.imageWidth;
+        int height = tile.imageHeight;
+        int ori_imageWidth = tile.ori_imageWidth;
+        int ori_imageHeight = tile.ori_imageHeight;
+        if (!superResolutionMode || (ori_imageWidth <= width && ori_imageHeight <= height)) {
+            return null;
+        }
+        MaskRegion holes = tile.scaled_mask.bounds();
+        MaskRegion oriHoles = tile.ori_mask != null ? tile.ori_mask.bounds() : null;
+        if (oriHoles != null) {
+            MaskRegion scaled = new MaskRegion(oriHoles.left * width / ori_imageWidth,
+                    oriHoles.top * height / ori_imageHeight,
+                    (oriHoles.right * width + ori_imageWidth - 1) / ori_imageWidth,
+                    (oriHoles.bottom * height + ori_imageHeight - 1) / ori_imageHeight);
+            holes = holes == null ? scaled : holes.union(scaled);
+        }
+        if (holes == null) {
+            return null;
+        }
+        // Without a native mask the composite blends with the bilinear upscale of in_mask, which
+        // reaches a model pixel past the holes. The native mask only needs its bounds rounded out
+        // to model pixels, done above; ESRGAN context comes from the full tiles, not from here.
+        MaskRegion region = new MaskRegion(Math.max(0, holes.left - SR_MARGIN), Math.max(0, holes.top - SR_MARGIN),
+                Math.min(width, holes.right + SR_MARGIN), Math.min(height, holes.bottom + SR_MARGIN));
+        int[] fake = new int[ori_imageWidth * ori_imageHeight];
+        long stime = System.nanoTime();
+        try {
+            superResolution(compData, width, height, region, fake, ori_imageWidth, ori_imageHeight);
+        } catch (OrtException e) {
+            LOG.log(Level.WARNING, "Super-resolution failed, upscaling bilinearly", e);
+            return null;
+        }
+        metrics.since(InferenceMetrics.SUPER_RESOLUTION, stime);
+        return fake;
+    }
+
+    public void setSuperResolutionMode(boolean superResolutionMode) {
+        this.superResolutionMode = superResolutionMode;
+    }
+
+    public PixelImage[] postprocess(float[] out_array) throws OrtException {
+        return composite(frameTile, out_array, 0);
+    }
+
+    public PixelImage[] miganPostprocess(float[] out_array) throws OrtException {
+        return composite(miganTile, out_array, 0);
+    }
+
+    private PixelImage[] composite(InpaintingTile tile, float[] out_array, int offset) {
+        long stime = System.nanoTime();
+        int width = tile.imageWidth;
+        int height = tile.imageHeight;
+        int stride = height * width;
+        int[] imgData = tile.gt_img.getPixels();
+
+        int[] compData = new int[stride];
+        int[] inMaskData = new int[stride];
+        pixelPool.forRows(width, height, (stripe, fromRow, toRow) ->
+                PixelCompositor.compositeTensor(imgData, tile.scaled_mask, out_array, offset, compData, inMaskData,
+                        stride, fromRow * width, toRow * width));
+
+        PixelImage comp_out_img = new PixelImage(compData, width, height);
+        PixelImage in_mask = new PixelImage(inMaskData, width, height);
+        long compositeNanos = System.nanoTime() - stime;
+
+        // back to the original resolution, through super-resolution when it is enabled
+        int ori_imageWidth = tile.ori_imageWidth;
+        int ori_imageHeight = tile.ori_imageHeight;
+        int[] srData = superResolve(tile, compData);
+        stime = System.nanoTime();
+        int ori_stride = ori_imageHeight * ori_imageWidth;
+        int[] compImgData_ = srData != null ? srData
+                : comp_out_img.scale(ori_imageWidth, ori_imageHeight, pixelPool).getPixels();
+        int[] imgData_ = new int[ori_stride];
+
+        // every pixel of imgData_ is written from the ground truth or the fake image
+        if (tile.ori_mask != null) {
+            stime = metrics.since(InferenceMetrics.UPSCALE, stime);
+            BinaryMask oriMask = tile.ori_mask;
+            pixelPool.forRows(ori_imageWidth, ori_imageHeight, (stripe, fromRow, toRow) ->
+                    PixelCompositor.compositeMasked(tile.ori_gt_img.getPixels(), compImgData_, oriMask, imgData_,
+                            fromRow * ori_imageWidth, toRow * ori_imageWidth));
+        } else {
+            int[] maskData_ = in_mask.scale(ori_imageWidth, ori_imageHeight, pixelPool).getPixels();
+            stime = metrics.since(InferenceMetrics.UPSCALE, stime);
+            pixelPool.forRows(ori_imageWidth, ori_imageHeight, (stripe, fromRow, toRow) ->
+                    PixelCompositor.compositeUpscaled(tile.ori_gt_img.getPixels(), compImgData_, maskData_, imgData_,
+                            fromRow * ori_imageWidth, toRow * ori_imageWidth));
+        }
+        PixelImage out_img = new PixelImage(imgData_, ori_imageWidth, ori_imageHeight);
+        metrics.record(InferenceMetrics.COMPOSITE, compositeNanos + System.nanoTime() - stime);
+
+        return new PixelImage[] {out_img, in_mask};
+    }
+
+    public PixelImage[] miganInference(PixelImage inputImage, PixelImage mask) throws OrtException{
+        this.miganTile = prepareTile(null, inputImage, null, pixelMask(mask), 512, 512);
+        float[][] outputs = miganEngine.run(Collections.singletonList(miganTile), false);
+        return miganPostprocess(outputs[0]);
+    }
+
+    public void setRegionMode(boolean regionMode) {
+        this.regionMode = regionMode;
+    }
+
+    public void setRegionContextScale(float regionContextScale) {
+        this.regionContextScale = regionContextScale;
+    }
+
+    public PixelImage[] Inference(PixelImage inputImage, PixelImage mask) throws OrtException{
+        return Inference(inputImage, mask, InferenceProgress.NONE);
+    }
+
+    // reports preprocess / inference / postprocess to progress, which may cancel between them
+    public PixelImage[] Inference(PixelImage inputImage, PixelImage mask, InferenceProgress progress)
+            throws OrtException{
+        return Inference(inputImage, null, pixelMask(mask), false, progress);
+    }
+
+    public PixelImage[] Inference(PixelImage inputImage, StrokeMask strokes, InferenceProgress progress)
+            throws OrtException{
+        return Inference(inputImage, strokes, null, progress);
+    }
+
+    public PixelImage[] Inference(PixelImage inputImage, StrokeMask strokes, ImageSource detail,
+                                  InferenceProgress progress) throws OrtException{
+        return Inference(inputImage, strokes, detail, false, progress);
+    }
+
+    // strokes recorded in the coordinates of inputImage; the mask is rasterized once per window at
+    // the model resolution and once at the native resolution of the window for the composite.
+    // detail, when not null, provides the model input pixels of each window instead of inputImage.
+    // variation asks for another style of the same input, which only the generator engine has.
+    public PixelImage[] Inference(PixelImage inputImage, StrokeMask strokes, ImageSource detail, boolean variation,
+                                  InferenceProgress progress) throws OrtException{
+        if (strokes.width != inputImage.width || strokes.height != inputImage.height) {
+            throw new IllegalArgumentException("Strokes of a " + strokes.width + "x" + strokes.height
+                    + " image for a " + inputImage.width + "x" + inputImage.height + " input");
+        }
+        return Inference(inputImage, detail, strokeMask(strokes), variation, progress);
+    }
+
+    private PixelImage[] Inference(PixelImage inputImage, ImageSource detail, MaskSource mask, boolean variation,
+                                   InferenceProgress progress) throws OrtException{
+        progress.stage(STAGE_PREPROCESS);
+        BinaryMask coarse = mask.sample(null, imageWidth, imageHeight);
+        InpaintingEngine engine = selectEngine(coarse, inputImage, variation);
+        lastEngine = engine.getName();
+        if (regionMode) {
+            List<MaskRegion> windows = findContextWindows(coarse, mask, engine);
+            if (!windows.isEmpty()
+                    && !(windows.size() == 1 && windows.get(0).covers(inputImage.width, inputImage.height))) {
+                return regionInference(engine, inputImage, detail, mask, coarse, windows, variation, progress);
+            }
+        }
+        return frameInference(engine, inputImage, detail, mask, variation, progress);
+    }
+
+    private InpaintingEngine selectEngine(BinaryMask coarse, PixelImage inputImage, boolean variation) {
+        float holeFraction = coarse.countHoles() / (float) coarse.size();
+        long generatorNanos = metrics.getStageStats(InferenceMetrics.ENCODER).p50Nanos
+                + metrics.getStageStats(InferenceMetrics.GENERATOR).p50Nanos;
+        long miganNanos = metrics.getStageStats(MIGAN).p50Nanos;
+        String name = enginePolicy.choose(holeFraction, (long) inputImage.width * inputImage.height,
+                variation, generatorNanos, miganNanos);
+        return getEngine(name);
+    }
+
+    // one window per connected component of the binary mask, at native resolution and never
+    // smaller than the engine input; components whose windows would overlap share a window
+    private List<MaskRegion> findContextWindows(BinaryMask coarse, MaskSource mask, InpaintingEngine engine) {
+        List<MaskRegion> boxes = MaskComponents.boundingBoxes(coarse, 1);
+        boxes = MaskComponents.scaleBoxes(boxes, coarse.width, coarse.height, mask.getWidth(), mask.getHeight());
+        return MaskComponents.contextWindows(boxes, mask.getWidth(), mask.getHeight(),
+                regionContextScale, Math.max(engine.getInputWidth(), engine.getInputHeight()));
+    }
+
+    // like frameInference, result[1] is the mask of the whole image at the engine input resolution
+    private PixelImage[] regionInference(InpaintingEngine engine, PixelImage inputImage, ImageSource detail,
+                                         MaskSource mask, BinaryMask coarse, List<MaskRegion> windows,
+                                         boolean variation, InferenceProgress progress) throws OrtException {
+        List<InpaintingTile> tiles = new ArrayList<>(windows.size());
+        for (MaskRegion window : windows) {
+            PixelImage crop = inputImage.crop(window);
+            tiles.add(prepareTile(window, crop, detail, mask, engine.getInputWidth(), engine.getInputHeight()));
+        }
+
+        progress.stage(STAGE_INFERENCE);
+        float[][] outputs = runEngine(engine, tiles, variation);
+        progress.stage(STAGE_POSTPROCESS);
+
+        // each window result is already composited with the ground truth outside its holes
+        int[] out = inputImage.getPixels().clone();
+        for (int n = 0; n < tiles.size(); n++) {
+            InpaintingTile tile = tiles.get(n);
+            PixelImage[] res = composite(tile, outputs[n], 0);
+            int w = tile.ori_imageWidth;
+            int[] windowPixels = res[0].getPixels();
+            for (int y = 0; y < tile.ori_imageHeight; y++) {
+                System.arraycopy(windowPixels, y * w, out, (tile.window.top + y) * inputImage.width + tile.window.left, w);
+            }
+        }
+
+        int maskWidth = engine.getInputWidth();
+        int maskHeight = engine.getInputHeight();
+        BinaryMask frameMask = coarse.width == maskWidth && coarse.height == maskHeight ? coarse
+                : mask.sample(null, maskWidth, maskHeight);
+        PixelImage in_mask = new PixelImage(PixelCompositor.maskPixels(frameMask), maskWidth, maskHeight);
+        return new PixelImage[] {new PixelImage(out, inputImage.width, inputImage.height), in_mask};
+    }
+
+    private PixelImage[] frameInference(InpaintingEngine engine, PixelImage inputImage, ImageSource detail,
+                                        MaskSource mask, boolean variation, InferenceProgress progress)
+            throws OrtException{
+        InpaintingTile tile = prepareTile(null, inputImage, detail, mask,
+                engine.getInputWidth(), engine.getInputHeight());
+        progress.stage(STAGE_INFERENCE);
+        float[][] outputs = runEngine(engine, Collections.singletonList(tile), variation);
+        progress.stage(STAGE_POSTPROCESS);
+        return composite(tile, outputs[0], 0);
+    }
+
+    private float[][] runEngine(InpaintingEngine engine, List<InpaintingTile> tiles, boolean variation)
+            throws OrtException {
+        long stime = System.nanoTime();
+        float[][] outputs = engine.run(tiles, variation);
+        time_span = System.nanoTime() - stime;
+        return outputs;
+    }
+
+    // mapping -> encoder -> generator, styles from the latent cache
+    private class GeneratorEngine implements InpaintingEngine {
+        @Override
+        public String getName() {
+            return GENERATOR;
+        }
+
+        @Override
+        public int getInputWidth() {
+            return imageWidth;
+        }
+
+        @Override
+        public int getInputHeight() {
+            return imageHeight;
+        }
+
+        @Override
+        public String[] getModels() {
+            return new String[] {MAPPING, ENCODER, GENERATOR};
+        }
+
+        @Override
+        public float[][] run(List<InpaintingTile> tiles, boolean variation) throws OrtException {
+            return generateTiles(tiles, variation);
+        }
+    }
+
+    // MI-GAN: one session at 512 x 512, no style input
+    private class MiganEngine implements InpaintingEngine {
+        @Override
+        public String getName() {
+            return MIGAN;
+        }
+
+        @Override
+        public int getInputWidth() {
+            return 512;
+        }
+
+        @Override
+        public int getInputHeight() {
+            return 512;
+        }
+
+        @Override
+        public String[] getModels() {
+            return new String[] {MIGAN};
+        }
+
+        @Override
+        public float[][] run(List<InpaintingTile> tiles, boolean variation) throws OrtException {
+            float[][] outputs = new float[tiles.size()][];
+            List<String> acquired = new ArrayList<>(1);
+            try {
+                OrtSession session = acquireSession(MIGAN, acquired);
+                for (int n = 0; n < tiles.size(); n++) {
+                    OnnxTensor inputTensor = miganTensor(tiles.get(n));
+                    Map<String,OnnxTensor> in_dict = new HashMap<>();
+                    in_dict.put("input",inputTensor);
+                    long stime = System.nanoTime();
+                    try (OrtSession.Result migan_out = session.run(in_dict)) {
+                        metrics.since(MIGAN, stime);
+                        outputs[n] = ((OnnxTensor) migan_out.get(0)).getFloatBuffer().array();
+                    } finally {
+                        releaseTensor(inputTensor);
+                    }
+                }
+            } catch (IOException e) {
+                throw new OrtException("Unable to load " + MIGAN + ": " + e.getMessage());
+            } finally {
+                for (String name : acquired) {
+                    sessions.release(name);
+                }
+            }
+            return outputs;
+        }
+    }
+
+    // Generator output (3 x H x W) for every tile. Tiles go through the sessions as one batch when
+    // the exported models have a dynamic batch dimension, otherwise they run concurrently. In
+    // incremental mode a variation runs the tiles one per pass, so each one can reuse its cached
+    // encoder features; other requests keep the batch.
+    private float[][] generateTiles(List<InpaintingTile> tiles, boolean variation) throws OrtException {
+        int count = tiles.size();
+        // styles are taken up front so results do not depend on scheduling order
+        LatentCache.Latent[] styles = new LatentCache.Latent[count];
+        for (int n = 0; n < count; n++) {
+            styles[n] = latents.next();
+        }
+
+        float[][] outputs = new float[count][];
+        List<String> acquired = new ArrayList<>(2);
+        try {
+            OrtSession encoder = acquireSession(ENCODER, acquired);
+            OrtSession generator = acquireSession(GENERATOR, acquired);
+            ExecutionPlan plan = planFor(encoder, generator);
+            if (count == 1) {
+                outputs[0] = generate(plan, encoder, generator, tiles, styles, 0, 1);
+            } else if (!(incrementalMode && variation) && supportsBatching(encoder, generator)) {
+                for (int start = 0; start < count; start += maxBatchSize) {
+                    int batch = Math.min(maxBatchSize, count - start);
+                    float[] out = generate(plan, encoder, generator, tiles, styles, start, batch);
+                    int tileSize = out.length / batch;
+                    for (int n = 0; n < batch; n++) {
+                        outputs[start + n] = Arrays.copyOfRange(out, n * tileSize, (n + 1) * tileSize);
+                    }
+                }
+            } else {
+                // OrtSession.run is thread-safe, so the tiles share the loaded sessions
+                List<Future<float[]>> futures = new ArrayList<>(count);
+                ExecutorService executor = getTileExecutor();
+                for (int n = 0; n < count; n++) {
+                    final int index = n;
+                    futures.add(executor.submit(() -> generate(plan, encoder, generator, tiles, styles, index, 1)));
+                }
+                for (int n = 0; n < count; n++) {
+                    outputs[n] = awaitTile(futures.get(n));
+                }
+            }
+        } catch (IOException e) {
+            throw new OrtException("Unable to load the generator pipeline: " + e.getMessage());
+        } finally {
+            for (String name : acquired) {
+                sessions.release(name);
+            }
+        }
+        return outputs;
+    }
+
+    private OrtSession acquireSession(String name, List<String> acquired) throws OrtException, IOException {
+        OrtSession session = sessions.acquire(name);
+        acquired.add(name);
+        return session;
+    }
+
+    // mapping network pass for one seed, called by the latent cache
+    private LatentCache.Latent map_latent(long seed, float[] noise) throws OrtException, IOException {
+        OrtSession mappingNetSession = sessions.acquire(MAPPING);
+        try (OnnxTensor noiseTensor = OnnxTensor.createTensor(environment, FloatBuffer.wrap(noise),
+                new long[]{1, noise.length})) {
+            long stime = System.nanoTime();
+            try (OrtSession.Result ws_out = mappingNetSession.run(Collections.singletonMap("noise", noiseTensor))) {
+                metrics.since(InferenceMetrics.MAPPING, stime);
+                OnnxTensor ws = (OnnxTensor) ws_out.get(0);
+                long[] shape = ws.getInfo().getShape();
+                return new LatentCache.Latent(seed, ws.getFloatBuffer().array(),
+                        Arrays.copyOfRange(shape, 1, shape.length));
+            }
+        } finally {
+            sessions.release(MAPPING);
+        }
+    }
+
+    // encoder -> generator on tiles[start, start + batch) as a single N-batch run, the style
+    // vectors come from the latent cache
+    private float[] generate(ExecutionPlan plan, OrtSession encoderSession, OrtSession generatorSession,
+                             List<InpaintingTile> tiles, LatentCache.Latent[] styles, int start, int batch)
+            throws OrtException {
+        int channels = 4;
+        int tileSize = channels * imageWidth * imageHeight;
+        // the input and ws tensors are reused across calls, only their contents are rewritten
+        InferenceContext context = contexts.acquire(batch, channels, imageHeight, imageWidth, styles[start].shape);
+        try {
+            for (int n = 0; n < batch; n++) {
+                fillInput(tiles.get(start + n), context.getInputBuffer(), n * tileSize);
+                context.putLatent(n, styles[start + n].ws);
+            }
+
+            // a style re-roll on an unchanged input skips the encoder
+            boolean incremental = incrementalMode && batch == 1 && encoderDependence != UNCACHEABLE;
+            long featureKey = 0;
+            if (incremental) {
+                featureKey = EncoderFeatureCache.hash(context.getInputBuffer(), 0, tileSize);
+                EncoderFeatureCache.Features cached = featureCache.get(featureKey);
+                if (cached != null) {
+                    metrics.count("encoder_cache_hits", 1);
+                    List<OnnxTensor> features = cached.toTensors(environment, context.getLatentTensor());
+                    try {
+                        return runGenerator(generatorSession, context.bindGenerator(plan, features), System.nanoTime());
+                    } finally {
+                        cached.release(features);
+                    }
+                }
+            }
+
+            // every Result is closed as soon as its outputs have been consumed
+            long stime = System.nanoTime();
+            try (OrtSession.Result en_result = encoderSession.run(context.getEncoderInputs(plan))) {
+                stime = metrics.since(InferenceMetrics.ENCODER, stime);
+                if (incremental) {
+                    List<OnnxTensor> features = new ArrayList<>(en_result.size());
+                    for (Map.Entry<String, OnnxValue> en_out : en_result) {
+                        features.add((OnnxTensor) en_out.getValue());
+                    }
+                    cacheFeatures(plan, encoderSession, context, featureKey, features);
+                    stime = System.nanoTime();
+                }
+                return runGenerator(generatorSession, context.bindGenerator(plan, en_result), stime);
+            }
+        } finally {
+            contexts.release(context);
+        }
+    }
+
+    // gen_in_dict is bound by the execution plan
+    private float[] runGenerator(OrtSession generatorSession, Map<String,OnnxTensor> gen_in_dict, long stime)
+            throws OrtException {
+        try (OrtSession.Result gen_out = generatorSession.run(gen_in_dict)) {
+            metrics.since(InferenceMetrics.GENERATOR, stime);
+            float[] out = ((OnnxTensor) gen_out.get(0)).getFloatBuffer().array();
+            metrics.count("output_copy_bytes", 4L * out.length);
+            return out;
+        }
+    }
+
+    private void cacheFeatures(ExecutionPlan plan, OrtSession encoderSession, InferenceContext context,
+                               long featureKey, List<OnnxTensor> features) throws OrtException {
+        EncoderFeatureCache.Dependence[] dependence = encoderDependence;
+        if (dependence == null) {
+            dependence = probeEncoder(plan, encoderSession, context, features);
+            encoderDependence = dependence;
+        }
+        EncoderFeatureCache.Features captured = EncoderFeatureCache.capture(features, dependence);
+        if (captured == null) {
+            encoderDependence = UNCACHEABLE;
+            LOG.fine("encoder outputs depend on in_ws, incremental mode disabled");
+            featureCache.clear();
+        } else {
+            featureCache.put(featureKey, captured);
+        }
+    }
+
+    // runs the encoder once more on the same input with another ws to see which outputs follow ws
+    private EncoderFeatureCache.Dependence[] probeEncoder(ExecutionPlan plan, OrtSession encoderSession,
+                                                          InferenceContext context, List<OnnxTensor> features)
+            throws OrtException {
+        OnnxTensor ws = context.getLatentTensor();
+        float[] ws1 = ws.getFloatBuffer().array();
+        float[] ws2 = new float[ws1.length];
+        for (int i = 0; i < ws1.length; i++) {
+            ws2[i] = 0.5f - ws1[i];
+        }
+        EncoderFeatureCache.Dependence[] dependence = new EncoderFeatureCache.Dependence[features.size()];
+        try (OnnxTensor probeWs = OnnxTensor.createTensor(environment, FloatBuffer.wrap(ws2), ws.getInfo().getShape())) {
+            try (OrtSession.Result probe = encoderSession.run(plan.encoderInputs(context.getInputTensor(), probeWs))) {
+                int i = 0;
+                for (Map.Entry<String, OnnxValue> en_out : probe) {
+                    OnnxTensor first = features.get(i);
+                    OnnxTensor second = (OnnxTensor) en_out.getValue();
+                    if (first.getInfo().type != OnnxJavaType.FLOAT) {
+                        dependence[i] = EncoderFeatureCache.Dependence.OTHER;
+                    } else {
+                        dependence[i] = EncoderFeatureCache.classify(first.getFloatBuffer().array(),
+                                second.getFloatBuffer().array(), ws1, ws2);
+                    }
+                    i++;
+                }
+            }
+        }
+        LOG.fine("encoder output dependence on in_ws: " + Arrays.toString(dependence));
+        return dependence;
+    }
+
+    // compiled when the encoder or generator session is (re)loaded
+    private synchronized ExecutionPlan planFor(OrtSession encoderSession, OrtSession generatorSession)
+            throws OrtException {
+        if (plan == null || !plan.isFor(encoderSession, generatorSession)) {
+            plan = ExecutionPlan.compile(encoderSession, generatorSession);
+        }
+        return plan;
+    }
+
+    private boolean supportsBatching(OrtSession encoderSession, OrtSession generatorSession) throws OrtException {
+        if (batchDynamic == null) {
+            batchDynamic = hasDynamicBatch(encoderSession)
+                    && hasDynamicBatch(generatorSession);
+        }
+        return batchDynamic;
+    }
+
+    private static boolean hasDynamicBatch(OrtSession session) throws OrtException {
+        for (NodeInfo info : session.getInputInfo().values()) {
+            if (!(info.getInfo() instanceof TensorInfo)) {
+                return false;
+            }
+            long[] shape = ((TensorInfo) info.getInfo()).getShape();
+            if (shape.length == 0 || shape[0] != -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private synchronized ExecutorService getTileExecutor() {
+        if (tileExecutor == null) {
+            tileExecutor = Executors.newFixedThreadPool(maxParallelTiles, runnable -> {
+                Thread thread = new Thread(runnable, "inpainting-tile");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return tileExecutor;
+    }
+
+    private static float[] awaitTile(Future<float[]> future) throws OrtException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrtException("Interrupted while waiting for a tile: " + e.getMessage());
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OrtException) {
+                throw (OrtException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+    }
+}
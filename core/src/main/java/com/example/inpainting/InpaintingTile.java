@@ -0,0 +1,37 @@
+package com.example.inpainting;
+
+// Per-call state of one inpainting pass: the source pixels at native resolution, their
+// model-resolution copies and the window of the full image they were cut from.
+public class InpaintingTile {
+
+    // null when the tile covers the whole image
+    public final MaskRegion window;
+
+    public final PixelImage ori_gt_img;
+    // holes at the native resolution, null when the composite upscales scaled_mask instead
+    public final BinaryMask ori_mask;
+    public final int ori_imageWidth;
+    public final int ori_imageHeight;
+
+    public final PixelImage gt_img;
+    public final BinaryMask scaled_mask;
+    public final int imageWidth;
+    public final int imageHeight;
+
+    public InpaintingTile(MaskRegion window, PixelImage ori_gt_img, PixelImage gt_img, BinaryMask scaled_mask) {
+        this(window, ori_gt_img, gt_img, scaled_mask, null);
+    }
+
+    public InpaintingTile(MaskRegion window, PixelImage ori_gt_img, PixelImage gt_img, BinaryMask scaled_mask,
+                          BinaryMask ori_mask) {
+        this.window = window;
+        this.ori_gt_img = ori_gt_img;
+        this.ori_mask = ori_mask;
+        this.ori_imageWidth = ori_gt_img.width;
+        this.ori_imageHeight = ori_gt_img.height;
+        this.gt_img = gt_img;
+        this.scaled_mask = scaled_mask;
+        this.imageWidth = gt_img.width;
+        this.imageHeight = gt_img.height;
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.inpainting;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ai.onnxruntime.OrtException;
+
+// Style vectors (the mapping network output ws) keyed by the seed of their input noise.
+// ws only depends on the noise, so the mapping pass is run once per seed: a pool of upcoming
+// seeds is mapped ahead of time on a background thread, and a pinned seed is reused on every
+// inference for consistent re-runs.
+public class LatentCache implements AutoCloseable {
+
+    public interface MappingNetwork {
+        Latent map(long seed, float[] noise) throws OrtException, IOException;
+    }
+
+    public static class Latent {
+        public final long seed;
+        public final float[] ws;
+        // shape of a single ws, without the batch dimension
+        public final long[] shape;
+
+        public Latent(long seed, float[] ws, long[] shape) {
+            this.seed = seed;
+            this.ws = ws;
+            this.shape = shape;
+        }
+    }
+
+    private final MappingNetwork network;
+    private final int noiseDim;
+    private final int poolSize;
+    private final Random seeds;
+
+    private final ArrayDeque<Long> upcoming = new ArrayDeque<>();
+    private final LinkedHashMap<Long, CompletableFuture<Latent>> cache;
+    private final ExecutorService prefetcher;
+    // futures of prefetch tasks not run yet, even when evicted from the cache
+    private final Set<CompletableFuture<Latent>> queued = new HashSet<>();
+    private Long pinnedSeed = null;
+    private long lastSeed;
+    private boolean closed = false;
+
+    public LatentCache(MappingNetwork network, int noiseDim, int poolSize, long seed) {
+        this.network = network;
+        this.noiseDim = noiseDim;
+        this.poolSize = Math.max(1, poolSize);
+        this.seeds = new Random(seed);
+        final int maxEntries = this.poolSize * 2;
+        this.cache = new LinkedHashMap<Long, CompletableFuture<Latent>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, CompletableFuture<Latent>> eldest) {
+                return size() > maxEntries && !eldest.getKey().equals(pinnedSeed);
+            }
+        };
+        this.prefetcher = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "latent-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // standard normal noise drawn from the seed
+    public static float[] noise(long seed, int dim) {
+        Random random = new Random(seed);
+        float[] noise = new float[dim];
+        for (int i = 0; i < dim; i++) {
+            noise[i] = (float) random.nextGaussian();
+        }
+        return noise;
+    }
+
+    // the pinned style if there is one, otherwise the next seed of the pool
+    public Latent next() throws OrtException {
+        long seed;
+        synchronized (this) {
+            if (pinnedSeed != null) {
+                seed = pinnedSeed;
+            } else {
+                fillUpcoming();
+                seed = upcoming.poll();
+            }
+            lastSeed = seed;
+        }
+        prefetch();
+        return get(seed);
+    }
+
+    public Latent get(long seed) throws OrtException {
+        CompletableFuture<Latent> future;
+        boolean compute = false;
+        synchronized (this) {
+            future = cache.get(seed);
+            if (future == null) {
+                future = new CompletableFuture<>();
+                cache.put(seed, future);
+                compute = true;
+            }
+        }
+        if (compute) {
+            compute(seed, future);
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OrtException("Interrupted while mapping seed " + seed);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof OrtException) {
+                throw (OrtException) cause;
+            }
+            throw new OrtException("Unable to map seed " + seed + ": " + cause.getMessage());
+        }
+    }
+
+    // maps the upcoming seeds that are not cached yet on the background thread
+    public void prefetch() {
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            fillUpcoming();
+            for (Long seed : upcoming) {
+                if (!cache.containsKey(seed)) {
+                    CompletableFuture<Latent> future = new CompletableFuture<>();
+                    cache.put(seed, future);
+                    queued.add(future);
+                    prefetcher.execute(() -> {
+                        synchronized (this) {
+                            queued.remove(future);
+                        }
+                        compute(seed, future);
+                    });
+                }
+            }
+        }
+    }
+
+    public synchronized void pin(long seed) {
+        pinnedSeed = seed;
+    }
+
+    // keeps the style of the last inference
+    public synchronized long pinLast() {
+        pinnedSeed = lastSeed;
+        return lastSeed;
+    }
+
+    public synchronized void unpin() {
+        pinnedSeed = null;
+    }
+
+    public synchronized Long getPinnedSeed() {
+        return pinnedSeed;
+    }
+
+    public synchronized long getLastSeed() {
+        return lastSeed;
+    }
+
+    // drops every cached ws; seeds are mapped again on demand
+    public synchronized void clear() {
+        cache.clear();
+    }
+
+    // prefetches that have not run are dropped; whoever waits for one of them gets an exception
+    @Override
+    public void close() {
+        List<CompletableFuture<Latent>> dropped;
+        synchronized (this) {
+            closed = true;
+            cache.clear();
+            dropped = new ArrayList<>(queued);
+            queued.clear();
+        }
+        prefetcher.shutdownNow();
+        OrtException error = new OrtException("Latent cache closed");
+        for (CompletableFuture<Latent> future : dropped) {
+            future.completeExceptionally(error);
+        }
+    }
+
+    private void fillUpcoming() {
+        while (upcoming.size() < poolSize) {
+            upcoming.add(seeds.nextLong());
+        }
+    }
+
+    private void compute(long seed, CompletableFuture<Latent> future) {
+        try {
+            future.complete(network.map(seed, noise(seed, noiseDim)));
+        } catch (Throwable e) {
+            synchronized (this) {
+                if (cache.get(seed) == future) {
+                    cache.remove(seed);
+                }
+            }
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.inpainting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Connected components of the holes of a binary mask, 8-connected.
+public class MaskComponents {
+
+    // Bounding box of every component with at least minPixels pixels.
+    public static List<MaskRegion> boundingBoxes(BinaryMask mask, int minPixels) {
+        int width = mask.width;
+        int height = mask.height;
+        List<MaskRegion> boxes = new ArrayList<>();
+        boolean[] visited = new boolean[width * height];
+        int[] stack = new int[width * height];
+
+        for (int start = 0; start < mask.size(); start++) {
+            if (!mask.isHole(start) || visited[start]) {
+                continue;
+            }
+            int minX = width, minY = height, maxX = -1, maxY = -1;
+            int count = 0;
+            int top = 0;
+            stack[top++] = start;
+            visited[start] = true;
+            while (top > 0) {
+                int idx = stack[--top];
+                int x = idx % width;
+                int y = idx / width;
+                count++;
+                if (x < minX) minX = x;
+                if (x > maxX) maxX = x;
+                if (y < minY) minY = y;
+                if (y > maxY) maxY = y;
+
+                for (int dy = -1; dy <= 1; dy++) {
+                    int ny = y + dy;
+                    if (ny < 0 || ny >= height) {
+                        continue;
+                    }
+                    for (int dx = -1; dx <= 1; dx++) {
+                        int nx = x + dx;
+                        if (nx < 0 || nx >= width) {
+                            continue;
+                        }
+                        int n = ny * width + nx;
+                        if (!visited[n] && mask.isHole(n)) {
+                            visited[n] = true;
+                            stack[top++] = n;
+                        }
+                    }
+                }
+            }
+            if (count >= minPixels) {
+                boxes.add(new MaskRegion(minX, minY, maxX + 1, maxY + 1));
+            }
+        }
+        return boxes;
+    }
+
+    // Maps boxes found on a gridWidth x gridHeight copy of the mask back to a width x height image,
+    // padded by one grid cell to cover the bilinear fringe of the downscaled mask.
+    public static List<MaskRegion> scaleBoxes(List<MaskRegion> boxes, int gridWidth, int gridHeight,
+                                              int width, int height) {
+        List<MaskRegion> scaled = new ArrayList<>(boxes.size());
+        for (MaskRegion box : boxes) {
+            int l = (int) Math.floor((box.left - 1) * (double) width / gridWidth);
+            int t = (int) Math.floor((box.top - 1) * (double) height / gridHeight);
+            int r = (int) Math.ceil((box.right + 1) * (double) width / gridWidth);
+            int b = (int) Math.ceil((box.bottom + 1) * (double) height / gridHeight);
+            scaled.add(new MaskRegion(Math.max(l, 0), Math.max(t, 0), Math.min(r, width), Math.min(b, height)));
+        }
+        return scaled;
+    }
+
+    // Context windows for each box; boxes whose windows overlap are merged so that the
+    // resulting windows are disjoint and can be inpainted independently.
+    public static List<MaskRegion> contextWindows(List<MaskRegion> boxes, int width, int height,
+                                                  float contextScale, int minSide) {
+        List<MaskRegion> merged = new ArrayList<>(boxes);
+        List<MaskRegion> windows = new ArrayList<>();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            windows.clear();
+            for (MaskRegion box : merged) {
+                windows.add(box.contextWindow(width, height, contextScale, minSide));
+            }
+            outer:
+            for (int i = 0; i < windows.size(); i++) {
+                for (int j = i + 1; j < windows.size(); j++) {
+                    if (windows.get(i).intersects(windows.get(j))) {
+                        merged.set(i, merged.get(i).union(merged.get(j)));
+                        merged.remove(j);
+                        changed = true;
+                        break outer;
+                    }
+                }
+            }
+        }
+        return windows;
+    }
+}
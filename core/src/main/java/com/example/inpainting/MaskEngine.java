@@ -0,0 +1,83 @@
+package com.example.inpainting;
+
+// Binarizes a drawn mask in one read of its pixels: integer luma, a 256 bin histogram, Otsu's
+// threshold and a packed BinaryMask. A pixel is a hole when it has any alpha or its luma is above
+// the threshold, the same rule the model inputs used to apply to the old ARGB binary bitmap.
+public class MaskEngine {
+
+    // set above any 8 bit luma so that visible pixels always end up over the threshold
+    private static final int VISIBLE = 0x100;
+
+    // pixels is used as scratch and holds the per-pixel luma (plus the VISIBLE flag) afterwards
+    public static BinaryMask binarize(int[] pixels, int width, int height, ParallelPixels parallel) {
+        int stripes = parallel.stripes(width, height);
+        int[][] partials = new int[stripes][256];
+        parallel.forStripes(stripes, height, (stripe, fromRow, toRow) -> {
+            int[] histogram = partials[stripe];
+            for (int idx = fromRow * width, end = toRow * width; idx < end; idx++) {
+                int argb = pixels[idx];
+                int gray = luma(argb);
+                histogram[gray]++;
+                pixels[idx] = (argb >>> 24) != 0 ? gray | VISIBLE : gray;
+            }
+        });
+        int[] histogram = partials[0];
+        for (int s = 1; s < stripes; s++) {
+            for (int i = 0; i < 256; i++) {
+                histogram[i] += partials[s][i];
+            }
+        }
+        int threshold = otsuThreshold(histogram, width * height);
+
+        // striped by 64 pixel words rather than rows so that no two stripes write the same word
+        BinaryMask binary = new BinaryMask(width, height);
+        int words = (width * height + 63) >>> 6;
+        parallel.forStripes(Math.min(stripes, words), words, (stripe, fromWord, toWord) -> {
+            int end = Math.min(toWord << 6, width * height);
+            for (int idx = fromWord << 6; idx < end; idx++) {
+                if (pixels[idx] > threshold) {
+                    binary.setHole(idx);
+                }
+            }
+        });
+        return binary;
+    }
+
+    // Rec. 709 weights of ColorMatrix.setSaturation(0), in 8 bit fixed point
+    public static int luma(int argb) {
+        return ((argb >> 16 & 0xFF) * 54 + (argb >> 8 & 0xFF) * 183 + (argb & 0xFF) * 19) >> 8;
+    }
+
+    public static int otsuThreshold(int[] histogram, int totalPixels) {
+        long sum = 0;
+        for (int i = 0; i < 256; i++) {
+            sum += (long) i * histogram[i];
+        }
+
+        long sumB = 0;
+        long wB = 0;
+        double varMax = 0;
+        int threshold = 0;
+
+        for (int i = 0; i < 256; i++) {
+            wB += histogram[i];
+            if (wB == 0) {
+                continue;
+            }
+            long wF = totalPixels - wB;
+            if (wF == 0) {
+                break;
+            }
+            sumB += (long) i * histogram[i];
+
+            // wB * wF * (mB - mF)^2 with the means expanded to keep the numerator integral
+            double diff = (double) (sumB * wF - (sum - sumB) * wB);
+            double varBetween = diff * diff / ((double) wB * wF);
+            if (varBetween > varMax) {
+                varMax = varBetween;
+                threshold = i;
+            }
+        }
+        return threshold;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.inpainting;
+
+// Axis-aligned pixel rectangle [left, right) x [top, bottom) used to crop the area around a mask.
+public class MaskRegion {
+
+    public final int left;
+    public final int top;
+    public final int right;
+    public final int bottom;
+
+    public MaskRegion(int left, int top, int right, int bottom) {
+        this.left = left;
+        this.top = top;
+        this.right = right;
+        this.bottom = bottom;
+    }
+
+    public int width() {
+        return right - left;
+    }
+
+    public int height() {
+        return bottom - top;
+    }
+
+    public boolean covers(int width, int height) {
+        return left <= 0 && top <= 0 && right >= width && bottom >= height;
+    }
+
+    public boolean intersects(MaskRegion other) {
+        return left < other.right && other.left < right && top < other.bottom && other.top < bottom;
+    }
+
+    public MaskRegion union(MaskRegion other) {
+        return new MaskRegion(Math.min(left, other.left), Math.min(top, other.top),
+                Math.max(right, other.right), Math.max(bottom, other.bottom));
+    }
+
+    // Square window centred on this box, contextScale times its longer side and at least minSide,
+    // shifted and clamped so that it stays inside a width x height image.
+    public MaskRegion contextWindow(int width, int height, float contextScale, int minSide) {
+        int side = Math.max(minSide, Math.round(Math.max(width(), height()) * contextScale));
+        int sideX = Math.min(side, width);
+        int sideY = Math.min(side, height);
+
+        int l = Math.max(Math.min((left + right - sideX) / 2, left), right - sideX);
+        int t = Math.max(Math.min((top + bottom - sideY) / 2, top), bottom - sideY);
+        l = clamp(l, 0, width - sideX);
+        t = clamp(t, 0, height - sideY);
+        return new MaskRegion(l, t, l + sideX, t + sideY);
+    }
+
+    private static int clamp(int v, int lo, int hi) {
+        return v < lo ? lo : (v > hi ? hi : v);
+    }
+
+    @Override
+    public String toString() {
+        return "MaskRegion(" + left + ", " + top + ", " + right + ", " + bottom + ")";
+    }
+}
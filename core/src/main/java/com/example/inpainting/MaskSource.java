@@ -0,0 +1,17 @@
+package com.example.inpainting;
+
+// The user mask of one inference. The model asks for the holes of each window it processes, at
+// the resolution it needs them, instead of scaling a full-size mask bitmap for every window.
+public interface MaskSource {
+
+    int getWidth();
+
+    int getHeight();
+
+    // holes of window (the whole mask when null) at width x height
+    BinaryMask sample(MaskRegion window, int width, int height);
+
+    // holes of window at its native resolution, or null when the source is only sampled at the
+    // model resolution and the composite has to upscale that one instead
+    BinaryMask sampleNative(MaskRegion window);
+}
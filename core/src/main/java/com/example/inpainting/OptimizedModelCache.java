@@ -0,0 +1,73 @@
+package com.example.inpainting;
+
+import java.io.File;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.SessionOptions;
+
+// Keeps the graph ONNX Runtime produces after optimizing a model, one file per model and profile.
+// The first launch pays for graph optimization once; later launches load the optimized file with
+// optimizations turned off.
+public class OptimizedModelCache {
+
+    private static final Logger LOG = Logger.getLogger(OptimizedModelCache.class.getName());
+
+    private final File cacheDir;
+
+    public OptimizedModelCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File optimizedFile(String name, ExecutionProfile profile) {
+        return new File(cacheDir, name + "." + profile.name + ".opt.onnx");
+    }
+
+    // stale once the source model was extracted again, e.g. after an app update
+    public boolean isValid(File optimized, File modelFile) {
+        return optimized.isFile() && optimized.length() > 0
+                && optimized.lastModified() >= modelFile.lastModified();
+    }
+
+    public OrtSession createSession(OrtEnvironment environment, String name, File modelFile,
+                                    ExecutionProfile profile) throws OrtException {
+        File optimized = optimizedFile(name, profile);
+        if (isValid(optimized, modelFile)) {
+            try {
+                return environment.createSession(optimized.getAbsolutePath(), profile.getPreoptimizedOptions());
+            } catch (OrtException e) {
+                // unreadable cache entry, rebuild it from the source model
+                LOG.log(Level.WARNING, "Unreadable optimized model " + optimized + ", rebuilding it", e);
+                optimized.delete();
+            }
+        }
+
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            return environment.createSession(modelFile.getAbsolutePath(), profile.getOptions());
+        }
+        File tmpFile = new File(cacheDir, optimized.getName() + ".tmp");
+        try (SessionOptions options = profile.newOptions(profile.optLevel)) {
+            options.setOptimizedModelFilePath(tmpFile.getAbsolutePath());
+            OrtSession session = environment.createSession(modelFile.getAbsolutePath(), options);
+            if (!tmpFile.renameTo(optimized)) {
+                tmpFile.delete();
+            }
+            return session;
+        }
+    }
+
+    public void clear() {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        for (File file : files) {
+            if (file.getName().contains(".opt.onnx")) {
+                file.delete();
+            }
+        }
+    }
+}
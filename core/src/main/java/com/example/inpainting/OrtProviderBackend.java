@@ -0,0 +1,110 @@
+package com.example.inpainting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OnnxValue;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.SessionOptions;
+
+// ProviderSelector backend that opens real ONNX Runtime sessions of one model.
+public class OrtProviderBackend implements ProviderSelector.Backend<OrtProviderBackend.SessionCandidate> {
+
+    private static final Logger LOG = Logger.getLogger(OrtProviderBackend.class.getName());
+    private static final long PROBE_SEED = 2023;
+
+    public static class SessionCandidate implements ProviderSelector.Candidate {
+        private final OrtEnvironment environment;
+        private OrtSession session;
+
+        SessionCandidate(OrtEnvironment environment, OrtSession session) {
+            this.environment = environment;
+            this.session = session;
+        }
+
+        @Override
+        public float[][] probe() throws OrtException {
+            Map<String, OnnxTensor> inputs = DummyInputs.random(environment, session, PROBE_SEED);
+            try (OrtSession.Result result = session.run(inputs)) {
+                List<float[]> outputs = new ArrayList<>();
+                for (Map.Entry<String, OnnxValue> entry : result) {
+                    OnnxValue value = entry.getValue();
+                    if (value instanceof OnnxTensor && ((OnnxTensor) value).getFloatBuffer() != null) {
+                        outputs.add(((OnnxTensor) value).getFloatBuffer().array());
+                    }
+                }
+                return outputs.toArray(new float[0][]);
+            } finally {
+                DummyInputs.close(inputs);
+            }
+        }
+
+        // hands the session over to the caller; closing the candidate no longer closes it
+        public OrtSession detach() {
+            OrtSession s = session;
+            session = null;
+            return s;
+        }
+
+        @Override
+        public void close() {
+            if (session != null) {
+                try {
+                    session.close();
+                } catch (OrtException e) {
+                    LOG.log(Level.WARNING, "Unable to close a probe session", e);
+                }
+                session = null;
+            }
+        }
+    }
+
+    private final OrtEnvironment environment;
+    private final String name;
+    private final File modelFile;
+    private final ExecutionProfile profile;
+    // the CPU reference comes from here, so it can be kept when CPU is selected
+    private final OptimizedModelCache optimizedCache;
+
+    public OrtProviderBackend(OrtEnvironment environment, File modelFile, ExecutionProfile profile) {
+        this(environment, null, modelFile, profile, null);
+    }
+
+    public OrtProviderBackend(OrtEnvironment environment, String name, File modelFile, ExecutionProfile profile,
+                              OptimizedModelCache optimizedCache) {
+        this.environment = environment;
+        this.name = name;
+        this.modelFile = modelFile;
+        this.profile = profile;
+        this.optimizedCache = optimizedCache;
+    }
+
+    @Override
+    public boolean isAvailable(ExecutionProvider provider) {
+        return OrtEnvironment.getAvailableProviders().contains(provider.ortProvider);
+    }
+
+    @Override
+    public SessionCandidate open(ExecutionProvider provider) throws OrtException {
+        if (provider == ExecutionProvider.CPU && optimizedCache != null) {
+            return new SessionCandidate(environment, optimizedCache.createSession(environment, name, modelFile, profile));
+        }
+        return new SessionCandidate(environment, createSession(environment, modelFile, profile, provider));
+    }
+
+    public static OrtSession createSession(OrtEnvironment environment, File modelFile, ExecutionProfile profile,
+                                           ExecutionProvider provider) throws OrtException {
+        // options are copied into the session, so they can be released right away
+        try (SessionOptions options = profile.newOptions(profile.optLevel)) {
+            provider.configure(options, profile);
+            return environment.createSession(modelFile.getAbsolutePath(), options);
+        }
+    }
+}
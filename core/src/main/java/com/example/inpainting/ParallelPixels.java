@@ -0,0 +1,93 @@
+package com.example.inpainting;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+
+// Runs per-pixel loops over horizontal row stripes on a bounded ForkJoinPool.
+// Stripe boundaries depend only on the stripe count and the height, and each pixel is computed by
+// the same code whichever stripe it falls in, so results are identical to the sequential loop.
+// Reductions such as histograms keep one partial per stripe and merge them afterwards.
+public class ParallelPixels implements AutoCloseable {
+
+    public interface RowKernel {
+        // processes rows [fromRow, toRow) as stripe number `stripe`
+        void rows(int stripe, int fromRow, int toRow);
+    }
+
+    public static final ParallelPixels SEQUENTIAL = new ParallelPixels(1);
+
+    // below this many pixels per stripe the fork overhead outweighs the loop
+    private static final int MIN_STRIPE_PIXELS = 16 * 1024;
+
+    private final int parallelism;
+    private final ForkJoinPool pool;
+
+    public ParallelPixels(int parallelism) {
+        this.parallelism = Math.max(1, parallelism);
+        if (this.parallelism == 1) {
+            this.pool = null;
+        } else {
+            this.pool = new ForkJoinPool(this.parallelism, fjPool -> {
+                ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(fjPool);
+                thread.setName("inpainting-pixels-" + thread.getPoolIndex());
+                return thread;
+            }, null, false);
+        }
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    // number of stripes forRows splits a width x height image into
+    public int stripes(int width, int height) {
+        long pixels = (long) width * height;
+        int byWork = (int) Math.max(1, pixels / MIN_STRIPE_PIXELS);
+        return Math.max(1, Math.min(Math.min(parallelism, height), byWork));
+    }
+
+    public void forRows(int width, int height, RowKernel kernel) {
+        forStripes(stripes(width, height), height, kernel);
+    }
+
+    // stripe s covers rows [s * height / stripes, (s + 1) * height / stripes)
+    public void forStripes(final int stripes, final int height, final RowKernel kernel) {
+        if (stripes <= 1 || pool == null || pool.isShutdown()) {
+            for (int s = 0; s < stripes; s++) {
+                kernel.rows(s, rowOf(s, stripes, height), rowOf(s + 1, stripes, height));
+            }
+            return;
+        }
+        pool.invoke(new RecursiveAction() {
+            @Override
+            protected void compute() {
+                List<RecursiveAction> tasks = new ArrayList<>(stripes);
+                for (int s = 0; s < stripes; s++) {
+                    final int stripe = s;
+                    tasks.add(new RecursiveAction() {
+                        @Override
+                        protected void compute() {
+                            kernel.rows(stripe, rowOf(stripe, stripes, height), rowOf(stripe + 1, stripes, height));
+                        }
+                    });
+                }
+                ForkJoinTask.invokeAll(tasks);
+            }
+        });
+    }
+
+    private static int rowOf(int stripe, int stripes, int height) {
+        return (int) ((long) stripe * height / stripes);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+}
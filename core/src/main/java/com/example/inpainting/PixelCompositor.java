@@ -0,0 +1,97 @@
+package com.example.inpainting;
+
+// Composites generator output with the ground truth on packed ARGB int[] buffers.
+// All per-pixel work is integer math so callers can write the result back with one setPixels.
+public class PixelCompositor {
+
+    public static final int WHITE = 0xFFFFFFFF;
+    public static final int BLACK = 0xFF000000;
+
+    private static final int OPAQUE = 0xFF000000;
+
+    // Model-resolution pass. Holes of the mask are taken from fake, which holds a CHW tensor in
+    // [-1, 1] starting at offset; the other pixels from the ground truth.
+    public static void compositeTensor(int[] gtData, BinaryMask mask, float[] fake, int offset,
+                                       int[] outPixels, int[] outMask, int pixelCount) {
+        compositeTensor(gtData, mask, fake, offset, outPixels, outMask, pixelCount, 0, pixelCount);
+    }
+
+    // same as above for pixels [from, to) only, pixelCount is still the plane size of fake
+    public static void compositeTensor(int[] gtData, BinaryMask mask, float[] fake, int offset,
+                                       int[] outPixels, int[] outMask, int pixelCount, int from, int to) {
+        int stride = pixelCount;
+        for (int idx = from; idx < to; idx++) {
+            if (!mask.isHole(idx)) {
+                outPixels[idx] = OPAQUE | gtData[idx];
+                outMask[idx] = WHITE;
+            } else {
+                int r = toChannel(fake[offset + idx]);
+                int g = toChannel(fake[offset + idx + stride]);
+                int b = toChannel(fake[offset + idx + stride * 2]);
+                outPixels[idx] = OPAQUE | (r << 16) | (g << 8) | b;
+                outMask[idx] = BLACK;
+            }
+        }
+    }
+
+    // the WHITE/BLACK mask image of the composite passes: black on holes, white elsewhere
+    public static int[] maskPixels(BinaryMask mask) {
+        int[] out = new int[mask.size()];
+        for (int idx = 0; idx < out.length; idx++) {
+            out[idx] = mask.isHole(idx) ? BLACK : WHITE;
+        }
+        return out;
+    }
+
+    // Original-resolution pass. maskData is the upscaled WHITE/BLACK mask, so its edges are gray.
+    // Pure white pixels are copied from the ground truth, pure black ones from the fake image and
+    // only the gray seam is blended, weighted by the mask level.
+    public static void compositeUpscaled(int[] gtData, int[] fakeData, int[] maskData,
+                                         int[] outPixels, int pixelCount) {
+        compositeUpscaled(gtData, fakeData, maskData, outPixels, 0, pixelCount);
+    }
+
+    public static void compositeUpscaled(int[] gtData, int[] fakeData, int[] maskData,
+                                         int[] outPixels, int from, int to) {
+        for (int idx = from; idx < to; idx++) {
+            int maskValue = maskData[idx];
+            if (maskValue == WHITE) {
+                outPixels[idx] = OPAQUE | gtData[idx];
+                continue;
+            }
+            int weight = maskValue & 0xFF;
+            if (weight == 0) {
+                outPixels[idx] = OPAQUE | fakeData[idx];
+                continue;
+            }
+            outPixels[idx] = blend(gtData[idx], fakeData[idx], weight);
+        }
+    }
+
+    // Original-resolution pass with an exact native mask: holes from the fake image, the other
+    // pixels from the ground truth, no seam to blend.
+    public static void compositeMasked(int[] gtData, int[] fakeData, BinaryMask mask,
+                                       int[] outPixels, int from, int to) {
+        for (int idx = from; idx < to; idx++) {
+            outPixels[idx] = OPAQUE | (mask.isHole(idx) ? fakeData[idx] : gtData[idx]);
+        }
+    }
+
+    // gt * w + fake * (255 - w), rounded, per channel
+    public static int blend(int gt, int fake, int weight) {
+        int inv = 255 - weight;
+        int r = ((gt >> 16 & 0xFF) * weight + (fake >> 16 & 0xFF) * inv + 127) / 255;
+        int g = ((gt >> 8 & 0xFF) * weight + (fake >> 8 & 0xFF) * inv + 127) / 255;
+        int b = ((gt & 0xFF) * weight + (fake & 0xFF) * inv + 127) / 255;
+        return OPAQUE | (r << 16) | (g << 8) | b;
+    }
+
+    // maps a tensor value in [-1, 1] to [0, 255], same rounding as Color.argb(float...)
+    public static int toChannel(float value) {
+        int c = (int) ((value + 1.0f) * 0.5f * 255.0f + 0.5f);
+        if (c < 0) {
+            return 0;
+        }
+        return c > 255 ? 255 : c;
+    }
+}
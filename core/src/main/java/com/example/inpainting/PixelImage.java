@@ -0,0 +1,106 @@
+package com.example.inpainting;
+
+// Packed ARGB pixels of a width x height image, row by row: the image type of the pipeline in
+// place of android.graphics.Bitmap. An image is not modified once it is created, so its scaled
+// and cropped copies can be shared between tiles and threads.
+public class PixelImage {
+
+    public final int width;
+    public final int height;
+    private final int[] pixels;
+
+    // pixels is kept, not copied
+    public PixelImage(int[] pixels, int width, int height) {
+        if (pixels.length != width * height) {
+            throw new IllegalArgumentException(pixels.length + " pixels for a " + width + "x" + height + " image");
+        }
+        this.pixels = pixels;
+        this.width = width;
+        this.height = height;
+    }
+
+    // the backing array, must not be modified
+    public int[] getPixels() {
+        return pixels;
+    }
+
+    public int getPixel(int x, int y) {
+        return pixels[y * width + x];
+    }
+
+    public PixelImage crop(MaskRegion region) {
+        if (region == null || (region.left == 0 && region.top == 0 && region.width() == width
+                && region.height() == height)) {
+            return this;
+        }
+        int w = region.width();
+        int h = region.height();
+        int[] out = new int[w * h];
+        for (int y = 0; y < h; y++) {
+            System.arraycopy(pixels, (region.top + y) * width + region.left, out, y * w, w);
+        }
+        return new PixelImage(out, w, h);
+    }
+
+    public PixelImage scale(int outWidth, int outHeight) {
+        return scale(outWidth, outHeight, ParallelPixels.SEQUENTIAL);
+    }
+
+    // Bilinear resampling with pixel centres aligned, each channel and alpha interpolated
+    // separately, like Bitmap.createScaledBitmap with filtering.
+    public PixelImage scale(int outWidth, int outHeight, ParallelPixels parallel) {
+        if (outWidth == width && outHeight == height) {
+            return this;
+        }
+        int[] x0 = new int[outWidth];
+        int[] x1 = new int[outWidth];
+        int[] fx = new int[outWidth];
+        taps(width, outWidth, x0, x1, fx);
+        int[] y0 = new int[outHeight];
+        int[] y1 = new int[outHeight];
+        int[] fy = new int[outHeight];
+        taps(height, outHeight, y0, y1, fy);
+
+        int[] out = new int[outWidth * outHeight];
+        parallel.forRows(outWidth, outHeight, (stripe, fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                int top = y0[y] * width;
+                int bottom = y1[y] * width;
+                int wy = fy[y];
+                for (int x = 0; x < outWidth; x++) {
+                    int wx = fx[x];
+                    int t = lerp(pixels[top + x0[x]], pixels[top + x1[x]], wx);
+                    int b = lerp(pixels[bottom + x0[x]], pixels[bottom + x1[x]], wx);
+                    out[y * outWidth + x] = lerp(t, b, wy);
+                }
+            }
+        });
+        return new PixelImage(out, outWidth, outHeight);
+    }
+
+    // source taps of every output position and the weight of the second one, in 1/256
+    private static void taps(int size, int outSize, int[] lo, int[] hi, int[] frac) {
+        float step = size / (float) outSize;
+        for (int i = 0; i < outSize; i++) {
+            float s = (i + 0.5f) * step - 0.5f;
+            if (s < 0) {
+                s = 0;
+            }
+            int l = Math.min((int) s, size - 1);
+            lo[i] = l;
+            hi[i] = Math.min(l + 1, size - 1);
+            frac[i] = Math.round((s - l) * 256);
+        }
+    }
+
+    // a + (b - a) * w / 256 on each of the four 8 bit channels
+    static int lerp(int a, int b, int w) {
+        if (w == 0 || a == b) {
+            return a;
+        }
+        int inv = 256 - w;
+        int ag = (((a >>> 8) & 0x00FF00FF) * inv + ((b >>> 8) & 0x00FF00FF) * w + 0x00800080) & 0xFF00FF00;
+        int rb = ((a & 0x00FF00FF) * inv + (b & 0x00FF00FF) * w + 0x00800080) >>> 8 & 0x00FF00FF;
+        return ag | rb;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.inpainting;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+// Times one model under each candidate ExecutionProfile on dummy inputs to find the fastest
+// profile on the current device.
+public class ProfileBenchmark {
+
+    public static class Result implements Comparable<Result> {
+        public final ExecutionProfile profile;
+        public final long loadNanos;
+        public final long medianNanos;
+        public final long minNanos;
+
+        Result(ExecutionProfile profile, long loadNanos, long medianNanos, long minNanos) {
+            this.profile = profile;
+            this.loadNanos = loadNanos;
+            this.medianNanos = medianNanos;
+            this.minNanos = minNanos;
+        }
+
+        @Override
+        public int compareTo(Result other) {
+            return Long.compare(medianNanos, other.medianNanos);
+        }
+
+        @Override
+        public String toString() {
+            return profile.name + ": median " + medianNanos / 1000000 + " ms, min " + minNanos / 1000000
+                    + " ms, load " + loadNanos / 1000000 + " ms";
+        }
+    }
+
+    // results sorted fastest first
+    public static List<Result> run(OrtEnvironment environment, File modelFile, ExecutionProfile[] profiles,
+                                   int runs) throws OrtException {
+        if (runs < 1) {
+            throw new IllegalArgumentException("At least one timed run is needed, got " + runs);
+        }
+        List<Result> results = new ArrayList<>(profiles.length);
+        for (ExecutionProfile profile : profiles) {
+            results.add(time(environment, modelFile, profile, runs));
+        }
+        Collections.sort(results);
+        return results;
+    }
+
+    private static Result time(OrtEnvironment environment, File modelFile, ExecutionProfile profile,
+                               int runs) throws OrtException {
+        long start = System.nanoTime();
+        try (OrtSession session = environment.createSession(modelFile.getAbsolutePath(), profile.getOptions())) {
+            long loadNanos = System.nanoTime() - start;
+            Map<String, OnnxTensor> inputs = DummyInputs.create(environment, session);
+            try {
+                // the first run pays for lazy allocation and is not counted
+                session.run(inputs).close();
+                long[] times = new long[runs];
+                for (int i = 0; i < runs; i++) {
+                    long t = System.nanoTime();
+                    session.run(inputs).close();
+                    times[i] = System.nanoTime() - t;
+                }
+                // sorted, so times[0] is the min and times[runs / 2] the median
+                Arrays.sort(times);
+                return new Result(profile, loadNanos, times[runs / 2], times[0]);
+            } finally {
+                DummyInputs.close(inputs);
+            }
+        }
+    }
+}
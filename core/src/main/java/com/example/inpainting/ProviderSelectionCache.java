@@ -0,0 +1,103 @@
+package com.example.inpainting;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Keeps the provider ProviderSelector chose, with its report, one file per model and profile next
+// to the optimized graphs. Later launches reuse it instead of probing every candidate again. An
+// entry only holds for the priority it was selected from and the model file it was probed on.
+public class ProviderSelectionCache {
+
+    private static final Logger LOG = Logger.getLogger(ProviderSelectionCache.class.getName());
+
+    public static class Entry {
+        public final ExecutionProvider provider;
+        public final List<String> report;
+
+        public Entry(ExecutionProvider provider, List<String> report) {
+            this.provider = provider;
+            this.report = Collections.unmodifiableList(report);
+        }
+    }
+
+    private final File cacheDir;
+
+    public ProviderSelectionCache(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File selectionFile(String name, ExecutionProfile profile) {
+        return new File(cacheDir, name + "." + profile.name + ".provider");
+    }
+
+    // null when there is no selection for this priority, or the model was extracted again since
+    public Entry load(String name, ExecutionProfile profile, File modelFile, List<ExecutionProvider> priority) {
+        File file = selectionFile(name, profile);
+        if (!file.isFile() || file.lastModified() < modelFile.lastModified()) {
+            return null;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            if (!priority.toString().equals(reader.readLine())) {
+                return null;
+            }
+            String provider = reader.readLine();
+            if (provider == null) {
+                return null;
+            }
+            List<String> report = new ArrayList<>();
+            String line;
+            while ((line = reader.readLine()) != null) {
+                report.add(line);
+            }
+            return new Entry(ExecutionProvider.valueOf(provider), report);
+        } catch (IOException | IllegalArgumentException e) {
+            // unreadable or from another version of the app, probe again
+            file.delete();
+            return null;
+        }
+    }
+
+    public void save(String name, ExecutionProfile profile, List<ExecutionProvider> priority,
+                     ExecutionProvider provider, List<String> report) {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+            return;
+        }
+        File file = selectionFile(name, profile);
+        File tmpFile = new File(cacheDir, file.getName() + ".tmp");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(tmpFile), StandardCharsets.UTF_8)) {
+            writer.write(priority.toString());
+            writer.write('\n');
+            writer.write(provider.name());
+            writer.write('\n');
+            for (String line : report) {
+                // a report line is one provider's outcome, keep it on one line
+                writer.write(line.replace('\n', ' '));
+                writer.write('\n');
+            }
+        } catch (IOException e) {
+            LOG.log(Level.WARNING, "Unable to save the provider selection " + file, e);
+            tmpFile.delete();
+            return;
+        }
+        if (!tmpFile.renameTo(file)) {
+            tmpFile.delete();
+        }
+    }
+
+    public void remove(String name, ExecutionProfile profile) {
+        selectionFile(name, profile).delete();
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.inpainting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// Picks the first execution provider, in priority order, that can open the model, survives a
+// probe run and matches the CPU reference output within tolerance. CPU is the fallback.
+// Session creation is behind Backend so the selection logic runs without a device or native EPs.
+public class ProviderSelector<C extends ProviderSelector.Candidate> {
+
+    public interface Candidate extends AutoCloseable {
+        // runs the fixed probe inputs and returns every float output, flattened
+        float[][] probe() throws Exception;
+
+        @Override
+        void close();
+    }
+
+    public interface Backend<C extends Candidate> {
+        boolean isAvailable(ExecutionProvider provider);
+
+        C open(ExecutionProvider provider) throws Exception;
+    }
+
+    public static class Selection<C extends Candidate> {
+        public final ExecutionProvider provider;
+        // the opened candidate of the chosen provider; the caller owns it
+        public final C candidate;
+        public final List<String> report;
+
+        Selection(ExecutionProvider provider, C candidate, List<String> report) {
+            this.provider = provider;
+            this.candidate = candidate;
+            this.report = Collections.unmodifiableList(report);
+        }
+    }
+
+    private final float absTolerance;
+    private final float relTolerance;
+
+    public ProviderSelector() {
+        this(1e-2f, 1e-2f);
+    }
+
+    public ProviderSelector(float absTolerance, float relTolerance) {
+        this.absTolerance = absTolerance;
+        this.relTolerance = relTolerance;
+    }
+
+    public Selection<C> select(Backend<C> backend, List<ExecutionProvider> priority) throws Exception {
+        List<String> report = new ArrayList<>();
+        C reference = backend.open(ExecutionProvider.CPU);
+        float[][] expected;
+        try {
+            expected = reference.probe();
+        } catch (Exception e) {
+            reference.close();
+            throw e;
+        }
+
+        for (ExecutionProvider provider : priority) {
+            if (provider == ExecutionProvider.CPU) {
+                break;
+            }
+            if (!backend.isAvailable(provider)) {
+                report.add(provider + ": not available");
+                continue;
+            }
+            C candidate = null;
+            try {
+                candidate = backend.open(provider);
+                float[][] actual = candidate.probe();
+                String mismatch = compare(expected, actual);
+                if (mismatch == null) {
+                    report.add(provider + ": selected");
+                    reference.close();
+                    return new Selection<>(provider, candidate, report);
+                }
+                report.add(provider + ": " + mismatch);
+            } catch (Exception e) {
+                report.add(provider + ": failed, " + e.getMessage());
+            }
+            if (candidate != null) {
+                candidate.close();
+            }
+        }
+        report.add(ExecutionProvider.CPU + ": selected");
+        return new Selection<>(ExecutionProvider.CPU, reference, report);
+    }
+
+    // null when actual matches expected, otherwise a description of the first mismatch
+    public String compare(float[][] expected, float[][] actual) {
+        if (expected.length != actual.length) {
+            return "output count " + actual.length + " != " + expected.length;
+        }
+        for (int o = 0; o < expected.length; o++) {
+            if (expected[o].length != actual[o].length) {
+                return "output " + o + " size " + actual[o].length + " != " + expected[o].length;
+            }
+            for (int i = 0; i < expected[o].length; i++) {
+                float e = expected[o][i];
+                float a = actual[o][i];
+                if (Float.isNaN(a) != Float.isNaN(e)
+                        || Math.abs(a - e) > absTolerance + relTolerance * Math.abs(e)) {
+                    return "output " + o + " differs at " + i + ": " + a + " vs " + e;
+                }
+            }
+        }
+        return null;
+    }
+}
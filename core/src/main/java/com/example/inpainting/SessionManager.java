@@ -0,0 +1,190 @@
+package com.example.inpainting;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+
+// Opens sessions on first use and closes the least recently used idle ones when the
+// (soft) memory budget is exceeded or the app is asked to trim memory.
+// The size of the model file is used as the estimate of a session's resident memory.
+// Sessions are created outside the lock, so a slow open never blocks the bookkeeping calls.
+public class SessionManager implements AutoCloseable {
+
+    private static final Logger LOG = Logger.getLogger(SessionManager.class.getName());
+
+    public interface ModelLocator {
+        File locate(String name) throws IOException;
+    }
+
+    public interface SessionFactory {
+        OrtSession create(String name, File modelFile) throws OrtException;
+    }
+
+    private static class Entry {
+        // null while the session is being opened
+        OrtSession session;
+        long bytes;
+        int users;
+    }
+
+    private final ModelLocator locator;
+    private final SessionFactory factory;
+
+    // access ordered, so iteration starts at the least recently used session
+    private final LinkedHashMap<String, Entry> openSessions = new LinkedHashMap<>(8, 0.75f, true);
+
+    private long memoryBudget = Long.MAX_VALUE;
+    private long openBytes = 0;
+
+    public SessionManager(ModelLocator locator, SessionFactory factory) {
+        this.locator = locator;
+        this.factory = factory;
+    }
+
+    public synchronized void setMemoryBudget(long memoryBudget) {
+        this.memoryBudget = memoryBudget;
+        evictTo(memoryBudget);
+    }
+
+    // every acquire must be paired with a release; sessions in use are never evicted.
+    // Concurrent acquires of a session that is still being opened wait for that open.
+    public OrtSession acquire(String name) throws OrtException, IOException {
+        Entry entry;
+        synchronized (this) {
+            while (true) {
+                entry = openSessions.get(name);
+                if (entry == null) {
+                    break;
+                }
+                if (entry.session != null) {
+                    entry.users++;
+                    return entry.session;
+                }
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while " + name + " is opened");
+                }
+            }
+            // the placeholder is in use, so it is never evicted while it opens
+            entry = new Entry();
+            entry.users = 1;
+            openSessions.put(name, entry);
+        }
+
+        OrtSession session = null;
+        try {
+            File modelFile = locator.locate(name);
+            long bytes = modelFile.length();
+            synchronized (this) {
+                evictTo(memoryBudget - bytes);
+                entry.bytes = bytes;
+                openBytes += bytes;
+            }
+            session = factory.create(name, modelFile);
+        } finally {
+            synchronized (this) {
+                if (session != null && openSessions.get(name) == entry) {
+                    entry.session = session;
+                } else {
+                    if (openSessions.get(name) == entry) {
+                        openSessions.remove(name);
+                        openBytes -= entry.bytes;
+                    }
+                    if (session != null) {
+                        // closed while the session was opened
+                        closeQuietly(session);
+                        session = null;
+                    }
+                }
+                notifyAll();
+            }
+        }
+        if (session == null) {
+            throw new OrtException("Session manager closed while " + name + " was opened");
+        }
+        return session;
+    }
+
+    public synchronized void release(String name) {
+        Entry entry = openSessions.get(name);
+        if (entry != null && entry.users > 0) {
+            entry.users--;
+        }
+    }
+
+    public synchronized boolean isOpen(String name) {
+        Entry entry = openSessions.get(name);
+        return entry != null && entry.session != null;
+    }
+
+    public synchronized long getOpenBytes() {
+        return openBytes;
+    }
+
+    // closes idle sessions, least recently used first, until at most targetBytes stay open
+    public synchronized List<String> evictTo(long targetBytes) {
+        List<String> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Entry>> it = openSessions.entrySet().iterator();
+        while (openBytes > targetBytes && it.hasNext()) {
+            Map.Entry<String, Entry> e = it.next();
+            Entry entry = e.getValue();
+            if (entry.users > 0) {
+                continue;
+            }
+            closeQuietly(entry.session);
+            openBytes -= entry.bytes;
+            it.remove();
+            evicted.add(e.getKey());
+        }
+        return evicted;
+    }
+
+    // closes one session if it is open and idle
+    public synchronized boolean evict(String name) {
+        Entry entry = openSessions.get(name);
+        if (entry == null || entry.users > 0) {
+            return false;
+        }
+        closeQuietly(entry.session);
+        openBytes -= entry.bytes;
+        openSessions.remove(name);
+        return true;
+    }
+
+    public synchronized List<String> evictIdle() {
+        return evictTo(0);
+    }
+
+    @Override
+    public synchronized void close() {
+        for (Entry entry : openSessions.values()) {
+            // a session still being opened is closed by its opener
+            if (entry.session != null) {
+                closeQuietly(entry.session);
+            }
+        }
+        openSessions.clear();
+        openBytes = 0;
+        notifyAll();
+    }
+
+    private static void closeQuietly(OrtSession session) {
+        try {
+            session.close();
+        } catch (OrtException e) {
+            LOG.log(Level.WARNING, "Unable to close a session", e);
+        }
+    }
+}
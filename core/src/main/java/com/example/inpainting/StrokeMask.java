@@ -0,0 +1,158 @@
+package com.example.inpainting;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+// The user mask as recorded brush paths: every stroke is a polyline with round caps and joins in
+// the coordinates of a width x height image. Nothing is drawn until the mask is needed; rasterize
+// then samples the strokes straight into a BinaryMask of the requested window and resolution, so
+// the model input and the full-resolution composite each get their own mask without any
+// intermediate bitmap.
+public class StrokeMask implements MaskSource {
+
+    public static class Stroke {
+        // brush diameter in image pixels
+        public final float width;
+        private float[] points = new float[16];
+        private int count = 0;
+
+        public Stroke(float width) {
+            this.width = width;
+        }
+
+        public void add(float x, float y) {
+            if (2 * count + 2 > points.length) {
+                float[] grown = new float[points.length * 2];
+                System.arraycopy(points, 0, grown, 0, 2 * count);
+                points = grown;
+            }
+            points[2 * count] = x;
+            points[2 * count + 1] = y;
+            count++;
+        }
+
+        public int size() {
+            return count;
+        }
+
+        public float x(int i) {
+            return points[2 * i];
+        }
+
+        public float y(int i) {
+            return points[2 * i + 1];
+        }
+
+        public long getBytes() {
+            return 4L * points.length;
+        }
+    }
+
+    public final int width;
+    public final int height;
+    private final List<Stroke> strokes;
+
+    public StrokeMask(int width, int height) {
+        this(width, height, new ArrayList<>());
+    }
+
+    public StrokeMask(int width, int height, List<Stroke> strokes) {
+        this.width = width;
+        this.height = height;
+        this.strokes = strokes;
+    }
+
+    public void add(Stroke stroke) {
+        strokes.add(stroke);
+    }
+
+    public List<Stroke> getStrokes() {
+        return Collections.unmodifiableList(strokes);
+    }
+
+    public boolean isEmpty() {
+        return strokes.isEmpty();
+    }
+
+    @Override
+    public int getWidth() {
+        return width;
+    }
+
+    @Override
+    public int getHeight() {
+        return height;
+    }
+
+    @Override
+    public BinaryMask sample(MaskRegion window, int outWidth, int outHeight) {
+        return rasterize(window, outWidth, outHeight);
+    }
+
+    @Override
+    public BinaryMask sampleNative(MaskRegion window) {
+        return window == null ? rasterize(width, height) : rasterize(window, window.width(), window.height());
+    }
+
+    public BinaryMask rasterize(int outWidth, int outHeight) {
+        return rasterize(null, outWidth, outHeight);
+    }
+
+    // Holes of window (the whole image when null) sampled at outWidth x outHeight. A pixel is a
+    // hole when the brush touches any part of it, like the alpha rule of the drawn bitmaps.
+    public BinaryMask rasterize(MaskRegion window, int outWidth, int outHeight) {
+        float left = window == null ? 0 : window.left;
+        float top = window == null ? 0 : window.top;
+        float scaleX = (window == null ? width : window.width()) / (float) outWidth;
+        float scaleY = (window == null ? height : window.height()) / (float) outHeight;
+        // half of a pixel diagonal, in image units
+        float reach = 0.5f * (float) Math.hypot(scaleX, scaleY);
+
+        BinaryMask mask = new BinaryMask(outWidth, outHeight);
+        for (Stroke stroke : strokes) {
+            float radius = stroke.width * 0.5f + reach;
+            if (stroke.size() == 1) {
+                segment(mask, stroke.x(0), stroke.y(0), stroke.x(0), stroke.y(0), radius,
+                        left, top, scaleX, scaleY);
+            }
+            for (int i = 1; i < stroke.size(); i++) {
+                segment(mask, stroke.x(i - 1), stroke.y(i - 1), stroke.x(i), stroke.y(i), radius,
+                        left, top, scaleX, scaleY);
+            }
+        }
+        return mask;
+    }
+
+    // marks every output pixel whose centre lies within radius of the segment (x0, y0)-(x1, y1)
+    private static void segment(BinaryMask mask, float x0, float y0, float x1, float y1, float radius,
+                                float left, float top, float scaleX, float scaleY) {
+        // bounding box of the capsule in output pixels
+        int fromX = Math.max(0, (int) Math.floor((Math.min(x0, x1) - radius - left) / scaleX));
+        int toX = Math.min(mask.width - 1, (int) Math.ceil((Math.max(x0, x1) + radius - left) / scaleX));
+        int fromY = Math.max(0, (int) Math.floor((Math.min(y0, y1) - radius - top) / scaleY));
+        int toY = Math.min(mask.height - 1, (int) Math.ceil((Math.max(y0, y1) + radius - top) / scaleY));
+        if (fromX > toX || fromY > toY) {
+            return;
+        }
+
+        float dx = x1 - x0;
+        float dy = y1 - y0;
+        float lengthSq = dx * dx + dy * dy;
+        float radiusSq = radius * radius;
+        for (int y = fromY; y <= toY; y++) {
+            float py = top + (y + 0.5f) * scaleY;
+            int row = y * mask.width;
+            for (int x = fromX; x <= toX; x++) {
+                float px = left + (x + 0.5f) * scaleX;
+                float t = lengthSq == 0 ? 0 : ((px - x0) * dx + (py - y0) * dy) / lengthSq;
+                t = t < 0 ? 0 : (t > 1 ? 1 : t);
+                float ex = px - (x0 + t * dx);
+                float ey = py - (y0 + t * dy);
+                if (ex * ex + ey * ey <= radiusSq) {
+                    mask.setHole(row + x);
+                }
+            }
+        }
+    }
+}
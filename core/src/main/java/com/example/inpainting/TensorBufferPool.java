@@ -0,0 +1,75 @@
+package com.example.inpainting;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+
+// Pool of direct, native-ordered float buffers used as ONNX input storage.
+// OnnxTensor.createTensor wraps a direct native-order buffer without copying it,
+// so a buffer must not be handed out again until the tensor wrapping it is closed.
+public class TensorBufferPool {
+
+    private final Map<Integer, ArrayDeque<FloatBuffer>> freeBuffers = new HashMap<>();
+
+    private final int maxBuffersPerSize;
+
+    private long allocations = 0;
+    private long pooledBytes = 0;
+
+    public TensorBufferPool() {
+        this(2);
+    }
+
+    public TensorBufferPool(int maxBuffersPerSize) {
+        this.maxBuffersPerSize = maxBuffersPerSize;
+    }
+
+    public synchronized FloatBuffer acquire(int capacity) {
+        ArrayDeque<FloatBuffer> queue = freeBuffers.get(capacity);
+        FloatBuffer buffer = (queue == null) ? null : queue.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocateDirect(capacity * 4)
+                    .order(ByteOrder.nativeOrder())
+                    .asFloatBuffer();
+            allocations++;
+        } else {
+            pooledBytes -= capacity * 4L;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    public synchronized void release(FloatBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        int capacity = buffer.capacity();
+        ArrayDeque<FloatBuffer> queue = freeBuffers.get(capacity);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            freeBuffers.put(capacity, queue);
+        }
+        if (queue.size() < maxBuffersPerSize) {
+            queue.push(buffer);
+            pooledBytes += capacity * 4L;
+        }
+    }
+
+    // direct buffers allocated so far, reused buffers are not counted
+    public synchronized long getAllocations() {
+        return allocations;
+    }
+
+    // bytes of the free buffers currently held
+    public synchronized long getPooledBytes() {
+        return pooledBytes;
+    }
+
+    public synchronized void clear() {
+        freeBuffers.clear();
+        pooledBytes = 0;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.inpainting;
+
+import java.nio.FloatBuffer;
+
+// Packs ARGB pixels and a BinaryMask into the planar 4-channel float input of the models.
+// Channels are normalized to [-1, 1] through a lookup table and zeroed inside the holes.
+public class TensorPacker {
+
+    // plane order of the 4-channel masked input: R, G, B, mask in {0, 1} for the encoder and
+    // mask - 0.5, R, G, B for MI-GAN
+    public static final int LAYOUT_RGB_MASK = 0;
+    public static final int LAYOUT_MASK_RGB = 1;
+
+    // (v / 127.5f) - 1.0f for every 8-bit channel value
+    private static final float[] NORM_TABLE = new float[256];
+
+    static {
+        for (int v = 0; v < 256; v++) {
+            NORM_TABLE[v] = (v / 127.5f) - 1.0f;
+        }
+    }
+
+    // pixels [from, to) of a pixelCount image into the 4 planes starting at offset
+    public static void pack(int[] pixels, BinaryMask mask, FloatBuffer out, int offset, int layout,
+                            int pixelCount, int from, int to) {
+        int stride = pixelCount;
+        int rgb = (layout == LAYOUT_MASK_RGB) ? offset + stride : offset;
+        int maskPlane = (layout == LAYOUT_MASK_RGB) ? offset : offset + stride * 3;
+        float maskShift = (layout == LAYOUT_MASK_RGB) ? 0.5f : 0.0f;
+        for (int idx = from; idx < to; idx++) {
+            int pixelValue = pixels[idx];
+            float maskValue = mask.isHole(idx) ? 0.0f : 1.0f;
+
+            out.put(rgb + idx, NORM_TABLE[pixelValue >> 16 & 0xFF] * maskValue);   //R
+            out.put(rgb + idx + stride, NORM_TABLE[pixelValue >> 8 & 0xFF] * maskValue); //G
+            out.put(rgb + idx + stride * 2, NORM_TABLE[pixelValue & 0xFF] * maskValue); //B
+            out.put(maskPlane + idx, maskValue - maskShift); //Mask
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.inpainting;
+
+import ai.onnxruntime.OrtException;
+
+// Super-resolution of one region of an image in fixed-size tiles. Neighbouring tiles overlap and
+// their results are feather-blended with linear ramps across the overlap, so the seams and the
+// border artifacts of each tile do not show. Only one tile goes through the model at a time,
+// which bounds the native memory whatever the size of the region; the upscaled tiles are
+// resampled straight to the destination resolution, so the full upscaled image never exists.
+public class TiledSuperResolution {
+
+    public interface TileModel {
+        // width x height ARGB pixels -> R, G, B planes in [0, 1], scale times the size
+        float[] upscale(int[] argb, int width, int height) throws OrtException;
+    }
+
+    // keeps the weight sum positive on a tile edge
+    private static final float MIN_WEIGHT = 1e-3f;
+
+    private final ParallelPixels pixelPool;
+    private final int tileSize;
+    private final int overlap;
+
+    public TiledSuperResolution(ParallelPixels pixelPool, int tileSize, int overlap) {
+        if (overlap < 1 || overlap >= tileSize) {
+            throw new IllegalArgumentException("Overlap " + overlap + " for " + tileSize + " pixel tiles");
+        }
+        this.pixelPool = pixelPool;
+        this.tileSize = tileSize;
+        this.overlap = overlap;
+    }
+
+    // Writes the pixels of region (in the width x height source) to out (outWidth x outHeight)
+    // through the model, returns the destination rectangle written. Pixels outside it are untouched.
+    public MaskRegion upscale(TileModel model, int[] pixels, int width, int height, MaskRegion region,
+                              int[] out, int outWidth, int outHeight) throws OrtException {
+        float scaleX = outWidth / (float) width;
+        float scaleY = outHeight / (float) height;
+        MaskRegion dst = new MaskRegion(
+                Math.max(0, (int) Math.floor(region.left * scaleX)),
+                Math.max(0, (int) Math.floor(region.top * scaleY)),
+                Math.min(outWidth, (int) Math.ceil(region.right * scaleX)),
+                Math.min(outHeight, (int) Math.ceil(region.bottom * scaleY)));
+        int dw = dst.width();
+        int dh = dst.height();
+        if (dw <= 0 || dh <= 0) {
+            return dst;
+        }
+        // weighted R, G, B and the weight sum of every destination pixel
+        float[] acc = new float[4 * dw * dh];
+
+        int tw = Math.min(tileSize, width);
+        int th = Math.min(tileSize, height);
+        int[] xs = tileStarts(region.left, region.right, tw, overlap, width);
+        int[] ys = tileStarts(region.top, region.bottom, th, overlap, height);
+        int[] tile = new int[tw * th];
+        for (int j = 0; j < ys.length; j++) {
+            for (int i = 0; i < xs.length; i++) {
+                for (int row = 0; row < th; row++) {
+                    System.arraycopy(pixels, (ys[j] + row) * width + xs[i], tile, row * tw, tw);
+                }
+                float[] upscaled = model.upscale(tile, tw, th);
+                int scale = scaleOf(upscaled.length, tw, th);
+                Axis ax = new Axis(xs[i], tw, i > 0, i < xs.length - 1, dst.left, dw, scaleX, scale);
+                Axis ay = new Axis(ys[j], th, j > 0, j < ys.length - 1, dst.top, dh, scaleY, scale);
+                accumulate(upscaled, tw * scale, th * scale, ax, ay, acc, dw);
+            }
+        }
+
+        pixelPool.forRows(dw, dh, (stripe, fromRow, toRow) -> {
+            for (int y = fromRow; y < toRow; y++) {
+                int row = (dst.top + y) * outWidth + dst.left;
+                for (int x = 0; x < dw; x++) {
+                    int a = 4 * (y * dw + x);
+                    float w = acc[a + 3];
+                    if (w > 0) {
+                        out[row + x] = 0xFF000000 | toByte(acc[a] / w) << 16 | toByte(acc[a + 1] / w) << 8
+                                | toByte(acc[a + 2] / w);
+                    }
+                }
+            }
+        });
+        return dst;
+    }
+
+    // Source positions of the tiles along one axis: tiles of `tile` pixels stepping tile - overlap
+    // that cover [from, to) plus half an overlap of context on both sides, inside [0, limit).
+    static int[] tileStarts(int from, int to, int tile, int overlap, int limit) {
+        int step = tile - overlap;
+        int first = Math.max(0, Math.min(from - overlap / 2, limit - tile));
+        int end = Math.min(limit, to + overlap / 2);
+        int count = 1;
+        for (int s = first; s + tile < end; s = Math.min(s + step, limit - tile)) {
+            count++;
+        }
+        int[] starts = new int[count];
+        starts[0] = first;
+        for (int n = 1; n < count; n++) {
+            starts[n] = Math.min(starts[n - 1] + step, limit - tile);
+        }
+        return starts;
+    }
+
+    // Weight of a tile [start, start + size) at source position m: ramps from 0 to 1 over the
+    // overlap on the sides shared with another tile, so the weights of two neighbours add up to 1.
+    static float feather(float m, int start, int size, int overlap, boolean hasPrev, boolean hasNext) {
+        float w = 1.0f;
+        if (hasPrev) {
+            w = Math.min(w, (m - start) / overlap);
+        }
+        if (hasNext) {
+            w = Math.min(w, (start + size - m) / overlap);
+        }
+        return Math.max(w, MIN_WEIGHT);
+    }
+
+    static int scaleOf(int length, int width, int height) throws OrtException {
+        int scale = (int) Math.round(Math.sqrt(length / (3.0 * width * height)));
+        if (scale < 1 || 3L * scale * scale * width * height != length) {
+            throw new OrtException("Super-resolution output of " + length + " values for a "
+                    + width + "x" + height + " tile");
+        }
+        return scale;
+    }
+
+    // the destination pixels of one axis covered by a tile, with their bilinear taps and weights
+    private class Axis {
+        final int from;
+        final int to;
+        final int[] lo;
+        final int[] hi;
+        final float[] frac;
+        final float[] weight;
+
+        // dstScale destination pixels per source pixel, upscaled pixels per source pixel
+        Axis(int start, int size, boolean hasPrev, boolean hasNext, int dstOffset, int dstSize,
+             float dstScale, int upscale) {
+            // destination pixels whose centre maps into [start, start + size)
+            from = Math.max(0, (int) Math.ceil(start * dstScale - 0.5f) - dstOffset);
+            to = Math.min(dstSize, (int) Math.ceil((start + size) * dstScale - 0.5f) - dstOffset);
+            int n = Math.max(0, to - from);
+            int last = size * upscale - 1;
+            lo = new int[n];
+            hi = new int[n];
+            frac = new float[n];
+            weight = new float[n];
+            for (int k = 0; k < n; k++) {
+                float m = (dstOffset + from + k + 0.5f) / dstScale;
+                float u = (m - start) * upscale - 0.5f;
+                u = u < 0 ? 0 : (u > last ? last : u);
+                lo[k] = (int) u;
+                hi[k] = Math.min(lo[k] + 1, last);
+                frac[k] = u - lo[k];
+                weight[k] = feather(m, start, size, overlap, hasPrev, hasNext);
+            }
+        }
+    }
+
+    private void accumulate(float[] upscaled, int uw, int uh, Axis ax, Axis ay, float[] acc, int dw) {
+        int plane = uw * uh;
+        int rows = ay.to - ay.from;
+        int cols = ax.to - ax.from;
+        if (rows <= 0 || cols <= 0) {
+            return;
+        }
+        pixelPool.forRows(cols, rows, (stripe, fromRow, toRow) -> {
+            for (int r = fromRow; r < toRow; r++) {
+                int top = ay.lo[r] * uw;
+                int bottom = ay.hi[r] * uw;
+                float fy = ay.frac[r];
+                int a = 4 * ((ay.from + r) * dw + ax.from);
+                for (int c = 0; c < cols; c++, a += 4) {
+                    float w = ax.weight[c] * ay.weight[r];
+                    float fx = ax.frac[c];
+                    for (int ch = 0; ch < 3; ch++) {
+                        int p = ch * plane;
+                        float t = upscaled[p + top + ax.lo[c]]
+                                + (upscaled[p + top + ax.hi[c]] - upscaled[p + top + ax.lo[c]]) * fx;
+                        float b = upscaled[p + bottom + ax.lo[c]]
+                                + (upscaled[p + bottom + ax.hi[c]] - upscaled[p + bottom + ax.lo[c]]) * fx;
+                        acc[a + ch] += w * (t + (b - t) * fy);
+                    }
+                    acc[a + 3] += w;
+                }
+            }
+        });
+    }
+
+    private static int toByte(float value) {
+        int c = (int) (value * 255.0f + 0.5f);
+        return c < 0 ? 0 : (c > 255 ? 255 : c);
+    }
+}
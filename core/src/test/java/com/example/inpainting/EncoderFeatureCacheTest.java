@@ -0,0 +1,61 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import java.nio.FloatBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Probe classification, input hashing and the byte budget of the encoder feature cache.
+ */
+public class EncoderFeatureCacheTest {
+
+    private static final float[] WS1 = {0.25f, -1.0f};
+    private static final float[] WS2 = {0.25f, 1.5f};
+
+    @Test
+    public void classifiesWsDependence() {
+        float[] features = {1.0f, 2.0f, 3.0f};
+        assertEquals(EncoderFeatureCache.Dependence.NONE,
+                EncoderFeatureCache.classify(features, features.clone(), WS1, WS2));
+        assertEquals(EncoderFeatureCache.Dependence.PASSTHROUGH,
+                EncoderFeatureCache.classify(WS1.clone(), WS2.clone(), WS1, WS2));
+        assertEquals(EncoderFeatureCache.Dependence.OTHER,
+                EncoderFeatureCache.classify(new float[] {0.5f, -2.0f}, new float[] {0.5f, 3.0f}, WS1, WS2));
+    }
+
+    @Test
+    public void hashCoversOnlyTheSlice() {
+        FloatBuffer buffer = FloatBuffer.wrap(new float[] {9.0f, 1.0f, 2.0f, 3.0f, 9.0f});
+        FloatBuffer other = FloatBuffer.wrap(new float[] {1.0f, 2.0f, 3.0f});
+        assertEquals(EncoderFeatureCache.hash(other, 0, 3), EncoderFeatureCache.hash(buffer, 1, 3));
+        assertNotEquals(EncoderFeatureCache.hash(other, 0, 3), EncoderFeatureCache.hash(buffer, 0, 3));
+        // -0.0 and 0.0 are different inputs
+        assertNotEquals(EncoderFeatureCache.hash(FloatBuffer.wrap(new float[] {0.0f}), 0, 1),
+                EncoderFeatureCache.hash(FloatBuffer.wrap(new float[] {-0.0f}), 0, 1));
+    }
+
+    private static EncoderFeatureCache.Features features(int floats) {
+        return new EncoderFeatureCache.Features(new float[][] {new float[floats], null},
+                new long[][] {{1, floats}, {1, 2}});
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverBudget() {
+        EncoderFeatureCache cache = new EncoderFeatureCache(1000);
+        cache.put(1, features(100));
+        cache.put(2, features(100));
+        assertNotNull(cache.get(1));
+        cache.put(3, features(100));
+
+        assertNotNull(cache.get(1));
+        assertNull(cache.get(2));
+        assertNotNull(cache.get(3));
+        assertEquals(800, cache.getBytes());
+
+        // larger than the whole budget, never cached
+        cache.put(4, features(1000));
+        assertNull(cache.get(4));
+    }
+}
@@ -0,0 +1,48 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Engine selection by mask area, image size and latency budget.
+ */
+public class EnginePolicyTest {
+
+    private static final String GENERATOR = InpaintingPipeline.GENERATOR;
+    private static final String MIGAN = InpaintingPipeline.MIGAN;
+    private static final long SMALL_IMAGE = 1024L * 1024;
+    private static final long LARGE_IMAGE = 4000L * 3000;
+
+    @Test
+    public void smallMasksTakeTheFastPath() {
+        EnginePolicy policy = new EnginePolicy(GENERATOR, MIGAN);
+
+        assertEquals(MIGAN, policy.choose(0.02f, SMALL_IMAGE, false, 0, 0));
+        assertEquals(GENERATOR, policy.choose(0.30f, SMALL_IMAGE, false, 0, 0));
+        // a medium mask only goes to MI-GAN on a large image
+        assertEquals(GENERATOR, policy.choose(0.12f, SMALL_IMAGE, false, 0, 0));
+        assertEquals(MIGAN, policy.choose(0.12f, LARGE_IMAGE, false, 0, 0));
+    }
+
+    @Test
+    public void latencyBudgetFallsBackToTheFasterEngine() {
+        EnginePolicy policy = new EnginePolicy(GENERATOR, MIGAN);
+        policy.setLatencyBudgetNanos(1000);
+
+        assertEquals(GENERATOR, policy.choose(0.5f, SMALL_IMAGE, false, 900, 300));
+        assertEquals(MIGAN, policy.choose(0.5f, SMALL_IMAGE, false, 1500, 300));
+        assertEquals(GENERATOR, policy.choose(0.5f, SMALL_IMAGE, false, 1500, 2000));
+    }
+
+    @Test
+    public void variationsAndForcedEnginesOverrideTheRules() {
+        EnginePolicy policy = new EnginePolicy(GENERATOR, MIGAN);
+
+        assertEquals(GENERATOR, policy.choose(0.01f, SMALL_IMAGE, true, 0, 0));
+        policy.setForcedEngine(MIGAN);
+        assertEquals(MIGAN, policy.choose(0.9f, SMALL_IMAGE, true, 0, 0));
+        policy.setForcedEngine(null);
+        assertEquals(GENERATOR, policy.choose(0.9f, SMALL_IMAGE, false, 0, 0));
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import ai.onnxruntime.OnnxJavaType;
+import ai.onnxruntime.OrtException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Encoder outputs must reach the generator input they were exported for.
+ */
+public class ExecutionPlanTest {
+
+    private static ExecutionPlan.Signature floats(String... names) {
+        OnnxJavaType[] types = new OnnxJavaType[names.length];
+        long[][] shapes = new long[names.length][];
+        for (int i = 0; i < names.length; i++) {
+            types[i] = OnnxJavaType.FLOAT;
+            shapes[i] = new long[]{1, 512};
+        }
+        return new ExecutionPlan.Signature(names, types, shapes);
+    }
+
+    @Test
+    public void bindsByNameWhateverTheOrder() throws OrtException {
+        int[] sources = ExecutionPlan.bind(floats("x", "ws", "skip"), floats("skip", "x", "ws"));
+
+        assertArrayEquals(new int[]{2, 0, 1}, sources);
+    }
+
+    @Test
+    public void unnamedInputsTakeTheRemainingOutputsInOrder() throws OrtException {
+        int[] sources = ExecutionPlan.bind(floats("out0", "ws", "out2"), floats("in0", "ws", "in2"));
+
+        assertArrayEquals(new int[]{0, 1, 2}, sources);
+    }
+
+    @Test(expected = OrtException.class)
+    public void rejectsMismatchedDtype() throws OrtException {
+        ExecutionPlan.Signature inputs = new ExecutionPlan.Signature(new String[]{"x"},
+                new OnnxJavaType[]{OnnxJavaType.INT64}, new long[][]{{1, 512}});
+
+        ExecutionPlan.bind(floats("x"), inputs);
+    }
+
+    @Test(expected = OrtException.class)
+    public void rejectsMissingOutput() throws OrtException {
+        ExecutionPlan.bind(floats("x"), floats("x", "ws"));
+    }
+
+    @Test
+    public void dynamicDimensionsMatchAnySize() {
+        assertTrue(ExecutionPlan.compatible(new long[]{1, 512, 16, 16}, new long[]{-1, 512, -1, -1}));
+        assertFalse(ExecutionPlan.compatible(new long[]{1, 256, 16, 16}, new long[]{-1, 512, -1, -1}));
+        assertFalse(ExecutionPlan.compatible(new long[]{1, 512}, new long[]{1, 512, 1}));
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * Stage percentiles, counters and the JSON export.
+ */
+public class InferenceMetricsTest {
+
+    @Test
+    public void percentilesUseNearestRank() {
+        InferenceMetrics metrics = new InferenceMetrics();
+        for (int i = 100; i >= 1; i--) {
+            metrics.record(InferenceMetrics.GENERATOR, i * 1000000L);
+        }
+        InferenceMetrics.StageStats stats = metrics.getStageStats(InferenceMetrics.GENERATOR);
+        assertEquals(100, stats.count);
+        assertEquals(50000000L, stats.p50Nanos);
+        assertEquals(95000000L, stats.p95Nanos);
+        assertEquals(99000000L, stats.p99Nanos);
+        assertEquals(100000000L, stats.maxNanos);
+        assertEquals(50500000L, stats.meanNanos);
+    }
+
+    @Test
+    public void percentilesCoverOnlyTheRecentWindow() {
+        InferenceMetrics metrics = new InferenceMetrics();
+        for (int i = 0; i < 256; i++) {
+            metrics.record(InferenceMetrics.ENCODER, 1000000000L);
+        }
+        for (int i = 0; i < 256; i++) {
+            metrics.record(InferenceMetrics.ENCODER, 1000L);
+        }
+        InferenceMetrics.StageStats stats = metrics.getStageStats(InferenceMetrics.ENCODER);
+        assertEquals(512, stats.count);
+        assertEquals(1000L, stats.p99Nanos);
+        assertEquals(1000000000L, stats.maxNanos);
+    }
+
+    @Test
+    public void countersAndGauges() {
+        InferenceMetrics metrics = new InferenceMetrics();
+        long[] bytes = {4096};
+        metrics.gauge("native_tensor_bytes", () -> bytes[0]);
+        metrics.count("input_tensors", 1);
+        metrics.count("input_tensors", 2);
+        bytes[0] = 8192;
+
+        Map<String, Long> counters = metrics.getCounters();
+        assertEquals(Long.valueOf(3), counters.get("input_tensors"));
+        assertEquals(Long.valueOf(8192), counters.get("native_tensor_bytes"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getCount("input_tensors"));
+    }
+
+    @Test
+    public void exportsEveryStageAsJson() {
+        InferenceMetrics metrics = new InferenceMetrics();
+        metrics.record(InferenceMetrics.PREPROCESS, 2500000L);
+        metrics.count("input_tensors", 1);
+
+        String json = metrics.toJson();
+        assertTrue(json.startsWith("{\"stages\":{\"mask_binarize\":{\"count\":0"));
+        assertTrue(json.contains("\"preprocess\":{\"count\":1,\"mean_ms\":2.500,\"p50_ms\":2.500"));
+        for (String stage : InferenceMetrics.STAGES) {
+            assertTrue(stage, json.contains("\"" + stage + "\":{"));
+        }
+        assertTrue(json.endsWith("\"counters\":{\"input_tensors\":1}}"));
+    }
+}
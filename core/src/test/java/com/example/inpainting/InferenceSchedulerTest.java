@@ -0,0 +1,110 @@
+package com.example.inpainting;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Coalescing, bounding and cancellation of queued inference requests.
+ */
+public class InferenceSchedulerTest {
+
+    private final InferenceScheduler scheduler = new InferenceScheduler(Runnable::run, 2);
+
+    @After
+    public void tearDown() {
+        scheduler.close();
+    }
+
+    // occupies the worker until the returned latch is released
+    private CountDownLatch block(CountDownLatch started) {
+        CountDownLatch release = new CountDownLatch(1);
+        scheduler.submit("blocker", progress -> {
+            started.countDown();
+            return release.await(5, TimeUnit.SECONDS);
+        }, null);
+        return release;
+    }
+
+    @Test
+    public void newerRequestReplacesPendingOne() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = block(started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<String> first = scheduler.submit("inpaint", progress -> "first", null);
+        CompletableFuture<String> second = scheduler.submit("inpaint", progress -> "second", null);
+        release.countDown();
+
+        assertEquals("second", second.get(5, TimeUnit.SECONDS));
+        assertTrue(first.isCancelled());
+    }
+
+    @Test
+    public void fullQueueDropsOldestPending() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = block(started);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        CompletableFuture<Integer> a = scheduler.submit("a", progress -> 1, null);
+        CompletableFuture<Integer> b = scheduler.submit("b", progress -> 2, null);
+        CompletableFuture<Integer> c = scheduler.submit("c", progress -> 3, null);
+        release.countDown();
+
+        assertTrue(a.isCancelled());
+        assertEquals(Integer.valueOf(2), b.get(5, TimeUnit.SECONDS));
+        assertEquals(Integer.valueOf(3), c.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void runningRequestStopsAtNextStage() throws Exception {
+        CountDownLatch inStage = new CountDownLatch(1);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        List<String> stages = Collections.synchronizedList(new ArrayList<>());
+        CompletableFuture<String> request = scheduler.submit("inpaint", progress -> {
+            progress.stage("preprocess");
+            inStage.countDown();
+            cancelled.await(5, TimeUnit.SECONDS);
+            progress.stage("inference");
+            return "finished";
+        }, (stage, elapsedNanos) -> stages.add(stage));
+
+        assertTrue(inStage.await(5, TimeUnit.SECONDS));
+        request.cancel(false);
+        cancelled.countDown();
+
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            fail("cancelled request completed");
+        } catch (CancellationException expected) {
+            // the job itself threw at the "inference" boundary
+        }
+        // the worker moves on to the next request
+        assertEquals("next", scheduler.submit("inpaint", progress -> "next", null).get(5, TimeUnit.SECONDS));
+        assertEquals(InferenceScheduler.QUEUED, stages.get(0));
+        assertFalse(stages.contains("inference"));
+    }
+
+    @Test
+    public void failuresCompleteExceptionally() throws Exception {
+        CompletableFuture<String> request = scheduler.submit("inpaint", progress -> {
+            throw new IllegalStateException("no model");
+        }, null);
+        try {
+            request.get(5, TimeUnit.SECONDS);
+            fail("failed request completed");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof IllegalStateException);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.inpainting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * The whole pipeline on a plain JVM, with a synthetic MI-GAN model on disk.
+ */
+public class InpaintingPipelineTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File migan() throws Exception {
+        File modelDir = folder.newFolder("models");
+        try (OutputStream out = new FileOutputStream(new File(modelDir, InpaintingPipeline.MIGAN + ".onnx"))) {
+            out.write(SyntheticModels.generator(512, 8, 42));
+        }
+        return modelDir;
+    }
+
+    @Test
+    public void inpaintsOnlyTheStrokes() throws Exception {
+        File modelDir = migan();
+        int width = 300;
+        int height = 200;
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | (i % width) << 16 | (i / width) << 8 | 0x80;
+        }
+        PixelImage image = new PixelImage(pixels, width, height);
+        StrokeMask strokes = new StrokeMask(width, height);
+        StrokeMask.Stroke line = new StrokeMask.Stroke(12);
+        line.add(100, 100);
+        line.add(200, 120);
+        strokes.add(line);
+
+        PixelImage[] result;
+        InpaintingPipeline pipeline = new InpaintingPipeline(modelDir);
+        try {
+            pipeline.getEnginePolicy().setForcedEngine(InpaintingPipeline.MIGAN);
+            pipeline.setSuperResolutionMode(false);
+            result = pipeline.Inference(image, strokes, InferenceProgress.NONE);
+        } finally {
+            pipeline.close();
+        }
+
+        assertEquals(InpaintingPipeline.MIGAN, pipeline.getLastEngine());
+        PixelImage out = result[0];
+        assertEquals(width, out.width);
+        assertEquals(height, out.height);
+        BinaryMask holes = strokes.rasterize(width, height);
+        int changed = 0;
+        for (int i = 0; i < pixels.length; i++) {
+            if (!holes.isHole(i)) {
+                assertEquals(pixels[i], out.getPixels()[i]);
+            } else if (out.getPixels()[i] != pixels[i]) {
+                changed++;
+            }
+        }
+        assertTrue(changed > holes.countHoles() / 2);
+    }
+
+    @Test
+    public void regionModeMasksEveryWindow() throws Exception {
+        int width = 1600;
+        int height = 600;
+        PixelImage image = new PixelImage(new int[width * height], width, height);
+        StrokeMask strokes = new StrokeMask(width, height);
+        StrokeMask.Stroke left = new StrokeMask.Stroke(40);
+        left.add(150, 300);
+        strokes.add(left);
+        StrokeMask.Stroke right = new StrokeMask.Stroke(40);
+        right.add(1450, 300);
+        strokes.add(right);
+
+        PixelImage[] result;
+        InpaintingPipeline pipeline = new InpaintingPipeline(migan());
+        try {
+            pipeline.getEnginePolicy().setForcedEngine(InpaintingPipeline.MIGAN);
+            pipeline.setSuperResolutionMode(false);
+            pipeline.setRegionMode(true);
+            result = pipeline.Inference(image, strokes, InferenceProgress.NONE);
+        } finally {
+            pipeline.close();
+        }
+
+        // the mask of the whole frame, with the holes of both windows
+        PixelImage mask = result[1];
+        assertEquals(512, mask.width);
+        assertEquals(512, mask.height);
+        assertEquals(PixelCompositor.BLACK, mask.getPixel(150 * 512 / width, 256));
+        assertEquals(PixelCompositor.BLACK, mask.getPixel(1450 * 512 / width, 256));
+        assertEquals(PixelCompositor.WHITE, mask.getPixel(256, 256));
+    }
+
+    @Test
+    public void providerSelectionIsKeptAcrossLaunches() throws Exception {
+        File modelDir = migan();
+        ExecutionProvider[] priority = {ExecutionProvider.XNNPACK, ExecutionProvider.CPU};
+        List<String> report;
+        InpaintingPipeline pipeline = new InpaintingPipeline(modelDir);
+        try {
+            pipeline.setProviderPriority(priority);
+            pipeline.warmUp(InpaintingPipeline.MIGAN);
+            report = pipeline.getProviderReport(InpaintingPipeline.MIGAN);
+            assertFalse(report.isEmpty());
+        } finally {
+            pipeline.close();
+        }
+        File saved = new ProviderSelectionCache(new File(modelDir, "optimized"))
+                .selectionFile(InpaintingPipeline.MIGAN, ExecutionProfile.performance());
+        assertTrue(saved.isFile());
+        long savedAt = saved.lastModified();
+
+        // the next launch loads the selection instead of probing again
+        InpaintingPipeline relaunched = new InpaintingPipeline(modelDir);
+        try {
+            relaunched.setProviderPriority(priority);
+            relaunched.warmUp(InpaintingPipeline.MIGAN);
+            assertEquals(report, relaunched.getProviderReport(InpaintingPipeline.MIGAN));
+            assertEquals(pipeline.getSelectedProvider(InpaintingPipeline.MIGAN),
+                    relaunched.getSelectedProvider(InpaintingPipeline.MIGAN));
+        } finally {
+            relaunched.close();
+        }
+        assertEquals(savedAt, saved.lastModified());
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.inpainting;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ai.onnxruntime.OrtException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Style vector reuse with a fake mapping network.
+ */
+public class LatentCacheTest {
+
+    private final Map<Long, AtomicInteger> calls = new ConcurrentHashMap<>();
+    private volatile boolean failing = false;
+
+    private final LatentCache cache = new LatentCache((seed, noise) -> {
+        calls.computeIfAbsent(seed, s -> new AtomicInteger()).incrementAndGet();
+        if (failing) {
+            throw new IOException("mapping not loaded");
+        }
+        return new LatentCache.Latent(seed, new float[] {noise[0], noise[1]}, new long[] {1, 2});
+    }, 8, 2, 2023);
+
+    @After
+    public void tearDown() {
+        cache.close();
+    }
+
+    @Test
+    public void mapsEachSeedOnce() throws Exception {
+        LatentCache.Latent first = cache.get(7);
+        LatentCache.Latent second = cache.get(7);
+        assertSame(first, second);
+        assertEquals(1, calls.get(7L).get());
+        assertArrayEquals(LatentCache.noise(7, 2), first.ws, 0.0f);
+    }
+
+    @Test
+    public void pinnedStyleIsReused() throws Exception {
+        LatentCache.Latent first = cache.next();
+        long pinned = cache.pinLast();
+        assertEquals(first.seed, pinned);
+        for (int i = 0; i < 5; i++) {
+            assertSame(first, cache.next());
+        }
+        cache.unpin();
+        assertNotEquals(pinned, cache.next().seed);
+    }
+
+    @Test
+    public void seedSequenceIsDeterministic() throws Exception {
+        LatentCache other = new LatentCache((seed, noise) -> new LatentCache.Latent(seed, noise, new long[] {8}),
+                8, 2, 2023);
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertEquals(other.next().seed, cache.next().seed);
+            }
+        } finally {
+            other.close();
+        }
+    }
+
+    @Test
+    public void failuresAreNotCached() throws Exception {
+        failing = true;
+        try {
+            cache.get(11);
+            fail("mapping failure was swallowed");
+        } catch (OrtException expected) {
+            assertTrue(expected.getMessage().contains("mapping not loaded"));
+        }
+        failing = false;
+        assertEquals(11, cache.get(11).seed);
+        assertEquals(2, calls.get(11L).get());
+    }
+
+    @Test
+    public void closeFailsWaitersOfDroppedPrefetches() throws Exception {
+        CountDownLatch mapping = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        LatentCache blocked = new LatentCache((seed, noise) -> {
+            mapping.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                throw new IOException("interrupted");
+            }
+            return new LatentCache.Latent(seed, noise, new long[] {8});
+        }, 8, 2, 2023);
+        Random seeds = new Random(2023);
+        seeds.nextLong();
+        long queuedSeed = seeds.nextLong();
+
+        ExecutorService waiter = Executors.newSingleThreadExecutor();
+        try {
+            // the first seed blocks the prefetch thread, the second one stays queued
+            blocked.prefetch();
+            assertTrue(mapping.await(5, TimeUnit.SECONDS));
+            Future<LatentCache.Latent> waiting = waiter.submit(() -> blocked.get(queuedSeed));
+            Thread.sleep(50);
+            assertFalse(waiting.isDone());
+
+            blocked.close();
+            try {
+                waiting.get(5, TimeUnit.SECONDS);
+                fail("closed while waiting");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof OrtException);
+            }
+        } finally {
+            proceed.countDown();
+            waiter.shutdownNow();
+        }
+    }
+}
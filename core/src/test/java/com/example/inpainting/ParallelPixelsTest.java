@@ -0,0 +1,92 @@
+package com.example.inpainting;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Striped pixel kernels must match the sequential loops exactly.
+ */
+public class ParallelPixelsTest {
+
+    private static final ParallelPixels PARALLEL = new ParallelPixels(4);
+
+    @AfterClass
+    public static void closePool() {
+        PARALLEL.close();
+    }
+
+    // transparent background with translucent strokes, like the drawn masks
+    private static int[] strokes(int width, int height, long seed) {
+        Random random = new Random(seed);
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            if (random.nextInt(5) == 0) {
+                pixels[i] = (0x33 << 24) | random.nextInt(0x1000000);
+            } else if (random.nextInt(7) == 0) {
+                pixels[i] = random.nextInt(0x1000000);
+            }
+        }
+        return pixels;
+    }
+
+    @Test
+    public void stripesCoverEveryRowOnce() {
+        int height = 517;
+        int[] hits = new int[height];
+        PARALLEL.forStripes(7, height, (stripe, fromRow, toRow) -> {
+            for (int row = fromRow; row < toRow; row++) {
+                hits[row]++;
+            }
+        });
+        for (int row = 0; row < height; row++) {
+            assertEquals(1, hits[row]);
+        }
+    }
+
+    @Test
+    public void binarizeMatchesSequential() {
+        int width = 509;
+        int height = 387;
+        int[] sequentialPixels = strokes(width, height, 42);
+        int[] parallelPixels = sequentialPixels.clone();
+
+        BinaryMask sequential = MaskEngine.binarize(sequentialPixels, width, height, ParallelPixels.SEQUENTIAL);
+        BinaryMask parallel = MaskEngine.binarize(parallelPixels, width, height, PARALLEL);
+
+        assertTrue(PARALLEL.stripes(width, height) > 1);
+        assertArrayEquals(sequentialPixels, parallelPixels);
+        assertEquals(sequential.countHoles(), parallel.countHoles());
+        for (int idx = 0; idx < width * height; idx++) {
+            assertEquals(sequential.isHole(idx), parallel.isHole(idx));
+        }
+    }
+
+    @Test
+    public void compositeMatchesSequential() {
+        int width = 256;
+        int height = 300;
+        int count = width * height;
+        Random random = new Random(7);
+        int[] gt = new int[count];
+        int[] fake = new int[count];
+        int[] mask = new int[count];
+        for (int i = 0; i < count; i++) {
+            gt[i] = random.nextInt();
+            fake[i] = random.nextInt();
+            int level = random.nextInt(256);
+            mask[i] = 0xFF000000 | (level << 16) | (level << 8) | level;
+        }
+
+        int[] expected = new int[count];
+        PixelCompositor.compositeUpscaled(gt, fake, mask, expected, count);
+        int[] actual = new int[count];
+        PARALLEL.forRows(width, height, (stripe, fromRow, toRow) ->
+                PixelCompositor.compositeUpscaled(gt, fake, mask, actual, fromRow * width, toRow * width));
+
+        assertArrayEquals(expected, actual);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Cropping and bilinear scaling of packed ARGB images.
+ */
+public class PixelImageTest {
+
+    @Test
+    public void lerpInterpolatesEveryChannel() {
+        assertEquals(0x80808080, PixelImage.lerp(0x00000000, 0xFFFFFFFF, 128));
+        assertEquals(0xFF102030, PixelImage.lerp(0xFF102030, 0x00000000, 0));
+        assertEquals(0x00000000, PixelImage.lerp(0xFF102030, 0x00000000, 256));
+        assertEquals(0xFF402010, PixelImage.lerp(0xFF000020, 0xFF804000, 128));
+    }
+
+    @Test
+    public void cropCopiesTheRegion() {
+        int[] pixels = new int[4 * 3];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = i;
+        }
+        PixelImage image = new PixelImage(pixels, 4, 3);
+
+        PixelImage crop = image.crop(new MaskRegion(1, 1, 3, 3));
+
+        assertEquals(2, crop.width);
+        assertEquals(2, crop.height);
+        assertArrayEquals(new int[]{5, 6, 9, 10}, crop.getPixels());
+        assertSame(image, image.crop(new MaskRegion(0, 0, 4, 3)));
+        assertSame(image, image.crop(null));
+    }
+
+    @Test
+    public void scaleKeepsFlatImagesAndInterpolatesEdges() {
+        int[] pixels = new int[8 * 8];
+        java.util.Arrays.fill(pixels, 0xFF336699);
+        PixelImage flat = new PixelImage(pixels, 8, 8).scale(13, 5, new ParallelPixels(3));
+        for (int p : flat.getPixels()) {
+            assertEquals(0xFF336699, p);
+        }
+
+        // black | white halves, upscaled 2x: the two columns at the edge are in between
+        PixelImage halves = new PixelImage(new int[]{0xFF000000, 0xFFFFFFFF}, 2, 1).scale(4, 1);
+        int[] row = halves.getPixels();
+        assertEquals(0xFF000000, row[0]);
+        assertEquals(0xFF404040, row[1]);
+        assertEquals(0xFFBFBFBF, row[2]);
+        assertEquals(0xFFFFFFFF, row[3]);
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.inpainting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+import ai.onnxruntime.OrtEnvironment;
+
+import static org.junit.Assert.*;
+
+/**
+ * Timing each profile on a small synthetic model.
+ */
+public class ProfileBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File model() throws Exception {
+        File modelFile = folder.newFile("generator.onnx");
+        try (OutputStream out = new FileOutputStream(modelFile)) {
+            out.write(SyntheticModels.generator(16, 2, 7));
+        }
+        return modelFile;
+    }
+
+    @Test
+    public void resultsAreSortedFastestFirst() throws Exception {
+        List<ProfileBenchmark.Result> results = ProfileBenchmark.run(OrtEnvironment.getEnvironment(), model(),
+                ExecutionProfile.presets(), 3);
+
+        assertEquals(ExecutionProfile.presets().length, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            ProfileBenchmark.Result result = results.get(i);
+            assertTrue(result.minNanos <= result.medianNanos);
+            if (i > 0) {
+                assertTrue(results.get(i - 1).medianNanos <= result.medianNanos);
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void needsAtLeastOneRun() throws Exception {
+        ProfileBenchmark.run(OrtEnvironment.getEnvironment(), model(), ExecutionProfile.presets(), 0);
+    }
+}
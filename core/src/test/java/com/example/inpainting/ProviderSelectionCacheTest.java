@@ -0,0 +1,65 @@
+package com.example.inpainting;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Saved provider selections are reused only for the same priority and model file.
+ */
+public class ProviderSelectionCacheTest {
+
+    private static final List<ExecutionProvider> PRIORITY =
+            Arrays.asList(ExecutionProvider.XNNPACK, ExecutionProvider.NNAPI, ExecutionProvider.CPU);
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void selectionIsReloaded() throws Exception {
+        File model = folder.newFile("generator.onnx");
+        model.setLastModified(System.currentTimeMillis() - 60_000);
+        ProviderSelectionCache cache = new ProviderSelectionCache(new File(folder.getRoot(), "optimized"));
+        ExecutionProfile profile = ExecutionProfile.performance();
+        List<String> report = Arrays.asList("XNNPACK: output 0 differs at 3: 1.0 vs 0.5", "NNAPI: selected");
+
+        assertNull(cache.load("generator", profile, model, PRIORITY));
+        cache.save("generator", profile, PRIORITY, ExecutionProvider.NNAPI, report);
+
+        ProviderSelectionCache.Entry entry = cache.load("generator", profile, model, PRIORITY);
+        assertNotNull(entry);
+        assertEquals(ExecutionProvider.NNAPI, entry.provider);
+        assertEquals(report, entry.report);
+        // selected from another priority
+        assertNull(cache.load("generator", profile, model, Arrays.asList(ExecutionProvider.NNAPI, ExecutionProvider.CPU)));
+    }
+
+    @Test
+    public void staleOrUnreadableSelectionIsIgnored() throws Exception {
+        File model = folder.newFile("migan.onnx");
+        ProviderSelectionCache cache = new ProviderSelectionCache(new File(folder.getRoot(), "optimized"));
+        ExecutionProfile profile = ExecutionProfile.performance();
+        cache.save("migan", profile, PRIORITY, ExecutionProvider.CPU, Arrays.asList("CPU: selected"));
+
+        // extracted again after the selection
+        model.setLastModified(System.currentTimeMillis() + 60_000);
+        assertNull(cache.load("migan", profile, model, PRIORITY));
+
+        model.setLastModified(System.currentTimeMillis() - 60_000);
+        File file = cache.selectionFile("migan", profile);
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write((PRIORITY + "\nTPU\n").getBytes(StandardCharsets.UTF_8));
+        }
+        assertNull(cache.load("migan", profile, model, PRIORITY));
+        assertFalse(file.exists());
+    }
+}
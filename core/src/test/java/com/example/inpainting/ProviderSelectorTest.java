@@ -0,0 +1,127 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * Provider selection against a fake backend, with CPU as the reference.
+ */
+public class ProviderSelectorTest {
+
+    private static final float[][] REFERENCE = {{0.0f, 0.5f, -1.0f}, {2.0f}};
+
+    private static class FakeCandidate implements ProviderSelector.Candidate {
+        final ExecutionProvider provider;
+        final float[][] outputs;
+        boolean closed;
+
+        FakeCandidate(ExecutionProvider provider, float[][] outputs) {
+            this.provider = provider;
+            this.outputs = outputs;
+        }
+
+        @Override
+        public float[][] probe() throws Exception {
+            if (outputs == null) {
+                throw new Exception("probe crashed");
+            }
+            return outputs;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    private static class FakeBackend implements ProviderSelector.Backend<FakeCandidate> {
+        final Set<ExecutionProvider> available = EnumSet.of(ExecutionProvider.CPU);
+        final Map<ExecutionProvider, float[][]> outputs = new EnumMap<>(ExecutionProvider.class);
+        final List<FakeCandidate> opened = new ArrayList<>();
+
+        FakeBackend() {
+            outputs.put(ExecutionProvider.CPU, REFERENCE);
+        }
+
+        void add(ExecutionProvider provider, float[][] probeOutputs) {
+            available.add(provider);
+            outputs.put(provider, probeOutputs);
+        }
+
+        @Override
+        public boolean isAvailable(ExecutionProvider provider) {
+            return available.contains(provider);
+        }
+
+        @Override
+        public FakeCandidate open(ExecutionProvider provider) {
+            FakeCandidate candidate = new FakeCandidate(provider, outputs.get(provider));
+            opened.add(candidate);
+            return candidate;
+        }
+    }
+
+    private static final List<ExecutionProvider> PRIORITY =
+            Arrays.asList(ExecutionProvider.XNNPACK, ExecutionProvider.NNAPI, ExecutionProvider.CPU);
+
+    @Test
+    public void selectsFirstMatchingAccelerator() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.add(ExecutionProvider.XNNPACK, new float[][] {{0.001f, 0.5f, -1.0f}, {2.01f}});
+        backend.add(ExecutionProvider.NNAPI, REFERENCE);
+
+        ProviderSelector.Selection<FakeCandidate> selection =
+                new ProviderSelector<FakeCandidate>().select(backend, PRIORITY);
+
+        assertEquals(ExecutionProvider.XNNPACK, selection.provider);
+        assertFalse(selection.candidate.closed);
+        // the CPU reference is released once an accelerator is chosen
+        assertTrue(backend.opened.get(0).closed);
+    }
+
+    @Test
+    public void skipsUnavailableAndMismatchingProviders() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.add(ExecutionProvider.NNAPI, new float[][] {{0.0f, 0.9f, -1.0f}, {2.0f}});
+
+        ProviderSelector.Selection<FakeCandidate> selection =
+                new ProviderSelector<FakeCandidate>().select(backend, PRIORITY);
+
+        assertEquals(ExecutionProvider.CPU, selection.provider);
+        assertEquals(ExecutionProvider.CPU, selection.candidate.provider);
+        assertFalse(selection.candidate.closed);
+        assertTrue(selection.report.get(0).startsWith("XNNPACK: not available"));
+        assertTrue(selection.report.get(1).startsWith("NNAPI: output 0 differs"));
+    }
+
+    @Test
+    public void fallsBackWhenProbeFails() throws Exception {
+        FakeBackend backend = new FakeBackend();
+        backend.add(ExecutionProvider.XNNPACK, null);
+        backend.add(ExecutionProvider.NNAPI, new float[][] {{0.0f, 0.5f, -1.0f}});
+
+        ProviderSelector.Selection<FakeCandidate> selection =
+                new ProviderSelector<FakeCandidate>().select(backend, PRIORITY);
+
+        assertEquals(ExecutionProvider.CPU, selection.provider);
+        for (FakeCandidate candidate : backend.opened) {
+            assertEquals(candidate != selection.candidate, candidate.closed);
+        }
+    }
+
+    @Test
+    public void compareRejectsNaN() {
+        ProviderSelector<FakeCandidate> selector = new ProviderSelector<>();
+        assertNull(selector.compare(REFERENCE, REFERENCE));
+        assertNotNull(selector.compare(REFERENCE, new float[][] {{0.0f, Float.NaN, -1.0f}, {2.0f}}));
+    }
+}
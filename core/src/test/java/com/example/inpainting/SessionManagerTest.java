@@ -0,0 +1,67 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtSession;
+
+import static org.junit.Assert.*;
+
+/**
+ * A slow session open must not hold up the other calls.
+ */
+public class SessionManagerTest {
+
+    @Test
+    public void openRunsOutsideTheLock() throws Exception {
+        OrtEnvironment environment = OrtEnvironment.getEnvironment();
+        byte[] model = SyntheticModels.generator(8, 1, 1);
+        CountDownLatch opening = new CountDownLatch(1);
+        CountDownLatch proceed = new CountDownLatch(1);
+        SessionManager sessions = new SessionManager(name -> new File(name), (name, modelFile) -> {
+            opening.countDown();
+            try {
+                proceed.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return environment.createSession(model);
+        });
+
+        ExecutorService threads = Executors.newFixedThreadPool(2);
+        try {
+            Future<OrtSession> first = threads.submit(() -> sessions.acquire("generator"));
+            assertTrue(opening.await(5, TimeUnit.SECONDS));
+            Future<OrtSession> second = threads.submit(() -> sessions.acquire("generator"));
+
+            // bookkeeping answers while the open is blocked, the second acquire waits for it
+            assertFalse(sessions.isOpen("generator"));
+            assertEquals(0, sessions.getOpenBytes());
+            assertTrue(sessions.evictIdle().isEmpty());
+            Thread.sleep(50);
+            assertFalse(second.isDone());
+
+            proceed.countDown();
+            OrtSession session = first.get(5, TimeUnit.SECONDS);
+            assertSame(session, second.get(5, TimeUnit.SECONDS));
+            assertTrue(sessions.isOpen("generator"));
+
+            // in use twice, evicted once both are released
+            sessions.release("generator");
+            assertFalse(sessions.evict("generator"));
+            sessions.release("generator");
+            assertTrue(sessions.evict("generator"));
+        } finally {
+            proceed.countDown();
+            threads.shutdownNow();
+            sessions.close();
+        }
+    }
+}
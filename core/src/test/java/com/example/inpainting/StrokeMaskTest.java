@@ -0,0 +1,76 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rasterizing the recorded strokes at any window and resolution.
+ */
+public class StrokeMaskTest {
+
+    private static StrokeMask zigzag() {
+        StrokeMask mask = new StrokeMask(40, 30);
+        StrokeMask.Stroke line = new StrokeMask.Stroke(6);
+        line.add(4, 4);
+        line.add(20, 22);
+        line.add(35, 10);
+        mask.add(line);
+        StrokeMask.Stroke dot = new StrokeMask.Stroke(3);
+        dot.add(8, 25);
+        mask.add(dot);
+        return mask;
+    }
+
+    @Test
+    public void tapMarksADisk() {
+        StrokeMask mask = new StrokeMask(10, 10);
+        StrokeMask.Stroke tap = new StrokeMask.Stroke(4);
+        tap.add(5, 5);
+        mask.add(tap);
+
+        BinaryMask binary = mask.rasterize(10, 10);
+
+        // radius 2 plus half a pixel diagonal around (5, 5), sampled at pixel centres
+        assertTrue(binary.isHole(5, 5));
+        assertTrue(binary.isHole(3, 5));
+        assertTrue(binary.isHole(6, 6));
+        assertTrue(binary.isHole(2, 5));
+        assertFalse(binary.isHole(1, 5));
+        assertFalse(binary.isHole(7, 7));
+        assertEquals("MaskRegion(2, 2, 8, 8)", binary.bounds().toString());
+    }
+
+    @Test
+    public void windowMatchesCropOfFullMask() {
+        StrokeMask mask = zigzag();
+        BinaryMask full = mask.rasterize(40, 30);
+        MaskRegion window = new MaskRegion(10, 5, 30, 25);
+
+        BinaryMask crop = mask.sampleNative(window);
+
+        assertEquals(20, crop.width);
+        assertEquals(20, crop.height);
+        for (int y = 0; y < 20; y++) {
+            for (int x = 0; x < 20; x++) {
+                assertEquals(full.isHole(x + 10, y + 5), crop.isHole(x, y));
+            }
+        }
+    }
+
+    @Test
+    public void downscaledMaskCoversEveryTouchedPixel() {
+        StrokeMask mask = zigzag();
+        BinaryMask full = mask.rasterize(40, 30);
+        BinaryMask half = mask.rasterize(20, 15);
+
+        assertFalse(full.isEmpty());
+        for (int y = 0; y < 30; y++) {
+            for (int x = 0; x < 40; x++) {
+                if (full.isHole(x, y)) {
+                    assertTrue(half.isHole(x / 2, y / 2));
+                }
+            }
+        }
+    }
+}
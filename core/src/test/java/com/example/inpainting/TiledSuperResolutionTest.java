@@ -0,0 +1,74 @@
+package com.example.inpainting;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import ai.onnxruntime.OrtException;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tiles must cover the region and blend into one seamless image.
+ */
+public class TiledSuperResolutionTest {
+
+    // nearest-neighbour 2x, like a perfect super-resolution of a flat image
+    private static float[] upscale2x(int[] argb, int width, int height) {
+        int uw = 2 * width;
+        int plane = uw * 2 * height;
+        float[] out = new float[3 * plane];
+        for (int y = 0; y < 2 * height; y++) {
+            for (int x = 0; x < uw; x++) {
+                int p = argb[(y / 2) * width + x / 2];
+                out[y * uw + x] = (p >> 16 & 0xFF) / 255.0f;
+                out[plane + y * uw + x] = (p >> 8 & 0xFF) / 255.0f;
+                out[2 * plane + y * uw + x] = (p & 0xFF) / 255.0f;
+            }
+        }
+        return out;
+    }
+
+    @Test
+    public void tilesCoverTheRegionWithContext() {
+        assertArrayEquals(new int[]{16, 40, 64}, TiledSuperResolution.tileStarts(20, 90, 32, 8, 200));
+        // clamped to the image, the last tile overlaps more
+        assertArrayEquals(new int[]{0, 24, 28}, TiledSuperResolution.tileStarts(0, 60, 32, 8, 60));
+        assertArrayEquals(new int[]{0}, TiledSuperResolution.tileStarts(2, 10, 16, 4, 16));
+    }
+
+    @Test
+    public void featherWeightsOfNeighboursAddUpToOne() {
+        for (float m = 24; m <= 32; m += 0.5f) {
+            float left = TiledSuperResolution.feather(m, 0, 32, 8, false, true);
+            float right = TiledSuperResolution.feather(m, 24, 32, 8, true, false);
+            assertEquals(1.0f, left + right, 2e-3f);
+        }
+    }
+
+    @Test
+    public void flatImageStaysFlatAcrossSeams() throws OrtException {
+        int width = 64;
+        int height = 48;
+        int[] pixels = new int[width * height];
+        Arrays.fill(pixels, 0xFF336699);
+        int[] out = new int[4 * width * height];
+
+        TiledSuperResolution sr = new TiledSuperResolution(ParallelPixels.SEQUENTIAL, 16, 4);
+        MaskRegion written = sr.upscale(TiledSuperResolutionTest::upscale2x, pixels, width, height,
+                new MaskRegion(10, 5, 50, 30), out, 2 * width, 2 * height);
+
+        assertEquals("MaskRegion(20, 10, 100, 60)", written.toString());
+        for (int y = 0; y < 2 * height; y++) {
+            for (int x = 0; x < 2 * width; x++) {
+                boolean inside = x >= 20 && x < 100 && y >= 10 && y < 60;
+                assertEquals(x + "," + y, inside ? 0xFF336699 : 0, out[y * 2 * width + x]);
+            }
+        }
+    }
+
+    @Test(expected = OrtException.class)
+    public void rejectsOutputOfTheWrongSize() throws OrtException {
+        TiledSuperResolution.scaleOf(3 * 10 * 10 * 4 + 1, 10, 10);
+    }
+}
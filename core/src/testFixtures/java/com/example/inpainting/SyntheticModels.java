@@ -0,0 +1,132 @@
+package com.example.inpainting;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+// ONNX models with the input and output of the inpainting generator, written as protobuf bytes
+// so that the benchmarks and tests need no model files. The graph is conv 3x3 (4 -> hidden) -> relu ->
+// conv 3x3 (hidden -> 3) -> tanh: a masked RGB input of 1 x 4 x size x size gives an image of
+// 1 x 3 x size x size in [-1, 1], like the real generator, at a fraction of its cost.
+public class SyntheticModels {
+
+    public static final String INPUT = "input";
+    public static final String OUTPUT = "output";
+
+    // onnx.proto enum values
+    private static final int FLOAT = 1;
+    private static final int ATTRIBUTE_INTS = 7;
+
+    // minimal protobuf writer, fields in any order are fine for the ONNX parser
+    private static class Proto {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        Proto varint(int field, long value) {
+            key(field, 0);
+            raw(value);
+            return this;
+        }
+
+        Proto bytes(int field, byte[] value) {
+            key(field, 2);
+            raw(value.length);
+            out.write(value, 0, value.length);
+            return this;
+        }
+
+        Proto string(int field, String value) {
+            return bytes(field, value.getBytes(StandardCharsets.UTF_8));
+        }
+
+        Proto message(int field, Proto value) {
+            return bytes(field, value.toByteArray());
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+
+        private void key(int field, int wireType) {
+            raw((long) field << 3 | wireType);
+        }
+
+        private void raw(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+    }
+
+    public static byte[] generator(int size, int hidden, long seed) {
+        Random random = new Random(seed);
+        Proto graph = new Proto()
+                .string(2, "synthetic_generator")
+                .message(1, conv("conv1", INPUT, "w1", "b1", "hidden"))
+                .message(1, node("relu", "Relu", "hidden", "hidden_relu"))
+                .message(1, conv("conv2", "hidden_relu", "w2", "b2", "pre_tanh"))
+                .message(1, node("tanh", "Tanh", "pre_tanh", OUTPUT))
+                .message(5, weights("w1", random, hidden, 4, 3, 3))
+                .message(5, weights("b1", random, hidden))
+                .message(5, weights("w2", random, 3, hidden, 3, 3))
+                .message(5, weights("b2", random, 3))
+                .message(11, valueInfo(INPUT, 1, 4, size, size))
+                .message(12, valueInfo(OUTPUT, 1, 3, size, size));
+        return new Proto()
+                .varint(1, 7)
+                .string(2, "inpainting-benchmark")
+                .message(7, graph)
+                .message(8, new Proto().varint(2, 13))
+                .toByteArray();
+    }
+
+    private static Proto node(String name, String opType, String input, String output) {
+        return new Proto().string(1, input).string(2, output).string(3, name).string(4, opType);
+    }
+
+    private static Proto conv(String name, String input, String weight, String bias, String output) {
+        return new Proto()
+                .string(1, input).string(1, weight).string(1, bias)
+                .string(2, output)
+                .string(3, name)
+                .string(4, "Conv")
+                .message(5, ints("kernel_shape", 3, 3))
+                .message(5, ints("pads", 1, 1, 1, 1));
+    }
+
+    private static Proto ints(String name, long... values) {
+        Proto attribute = new Proto().string(1, name).varint(20, ATTRIBUTE_INTS);
+        for (long value : values) {
+            attribute.varint(8, value);
+        }
+        return attribute;
+    }
+
+    // He-scaled uniform weights, so the activations stay in range through the layers
+    private static Proto weights(String name, Random random, long... dims) {
+        long count = 1;
+        Proto tensor = new Proto();
+        for (long dim : dims) {
+            tensor.varint(1, dim);
+            count *= dim;
+        }
+        float scale = dims.length > 1 ? (float) Math.sqrt(6.0 / (count / dims[0])) : 0.1f;
+        ByteBuffer data = ByteBuffer.allocate((int) count * 4).order(ByteOrder.LITTLE_ENDIAN);
+        for (long i = 0; i < count; i++) {
+            data.putFloat((random.nextFloat() * 2 - 1) * scale);
+        }
+        return tensor.varint(2, FLOAT).string(8, name).bytes(9, data.array());
+    }
+
+    private static Proto valueInfo(String name, long... dims) {
+        Proto shape = new Proto();
+        for (long dim : dims) {
+            shape.message(1, new Proto().varint(1, dim));
+        }
+        Proto tensorType = new Proto().varint(1, FLOAT).message(2, shape);
+        return new Proto().string(1, name).message(2, new Proto().message(1, tensorType));
+    }
+}